@@ -0,0 +1,44 @@
+package com.github.nikita.zhdanov.favorite.recipes.benchmark;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.integration.EmbeddedMariaDbConfig;
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeImportService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.stream.Stream;
+
+/**
+ * Starts the application (by default without the web layer) on a fresh embedded MariaDB seeded with generated recipes.
+ */
+public final class BenchmarkContext {
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(int recipes, String... properties) {
+        return start(WebApplicationType.NONE, recipes, properties);
+    }
+
+    // With the web layer on a random port, read it from local.server.port
+    public static ConfigurableApplicationContext startWeb(int recipes, String... properties) {
+        return start(WebApplicationType.SERVLET, recipes, Stream.concat(Stream.of("server.port=0"),
+                Stream.of(properties)).toArray(String[]::new));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, int recipes,
+                                                        String... properties) {
+        var context = new SpringApplicationBuilder(EmbeddedMariaDbConfig.class, Application.class)
+                .web(webApplicationType)
+                .properties(Stream.concat(Stream.of("spring.main.banner-mode=off", "logging.level.root=WARN"),
+                        Stream.of(properties)).toArray(String[]::new))
+                .run();
+        var result = context.getBean(RecipeImportService.class).importRecipes(
+                Stream.generate(new RecipeDataGenerator()::next).limit(recipes).iterator());
+        if (result.getFailed() > 0) {
+            context.close();
+            throw new IllegalStateException("Failed to seed the benchmark data: " + result.getErrors());
+        }
+        return context;
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.nikita.zhdanov.favorite.recipes.benchmark;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reproducible synthetic recipes: the same seed always gives the same recipes, ids included,
+ * so benchmark runs on different revisions search through the same data.
+ */
+public class RecipeDataGenerator implements Iterator<Recipe> {
+    public static final long DEFAULT_SEED = 20211201L;
+
+    private static final List<String> STYLES = List.of("Spicy", "Creamy", "Grilled", "Baked", "Classic", "Quick",
+            "Rustic", "Summer", "Winter", "Garden", "Smoky", "Lemon");
+    private static final List<String> DISHES = List.of("pasta", "pizza", "salad", "soup", "curry", "risotto", "stew",
+            "pie", "omelette", "burger", "tacos", "lasagna", "casserole", "noodles");
+    private static final List<String> VEGETABLES = List.of("Tomato", "Onion", "Garlic", "Potato", "Carrot", "Pepper",
+            "Zucchini", "Eggplant", "Spinach", "Mushroom", "Broccoli", "Cucumber", "Leek", "Celery", "Pumpkin", "Peas",
+            "Basil", "Parsley", "Rosemary", "Thyme", "Mozzarella", "Parmesan", "Cheddar", "Butter", "Cream", "Egg",
+            "Rice", "Flour", "Dough", "Lentils", "Chickpeas", "Olive oil", "Lemon", "Chili", "Ginger", "Coconut milk");
+    private static final List<String> MEAT = List.of("Chicken", "Beef", "Pork", "Tuna", "Salmon", "Bacon", "Shrimp");
+    private static final List<String> STEPS = List.of("Chop the %s into small pieces.", "Fry the %s in olive oil.",
+            "Boil the %s in salted water.", "Bake the %s in the oven for 20 minutes.", "Mix the %s in a bowl.",
+            "Grill the %s until golden.", "Season the %s with salt and pepper.", "Let the %s rest for 10 minutes.");
+
+    private final Random random;
+
+    public RecipeDataGenerator() {
+        this(DEFAULT_SEED);
+    }
+
+    public RecipeDataGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    public static List<Recipe> generate(int count) {
+        return Stream.generate(new RecipeDataGenerator()::next).limit(count).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean hasNext() {
+        return true;
+    }
+
+    @Override
+    public Recipe next() {
+        var vegetarian = random.nextInt(3) > 0;
+        var shuffled = new ArrayList<>(VEGETABLES);
+        Collections.shuffle(shuffled, random);
+        var names = new ArrayList<>(shuffled.subList(0, 3 + random.nextInt(6)));
+        if (!vegetarian) {
+            names.set(0, pick(MEAT));
+        }
+
+        var ingredients = names.stream()
+                .map(name -> Ingredient.builder()
+                        .id(uuid())
+                        .name(name)
+                        .amount(10 * (1 + random.nextInt(50)))
+                        .build())
+                .collect(Collectors.toList());
+        var instructions = Stream.generate(() -> String.format(pick(STEPS), pick(names).toLowerCase()))
+                .limit(3 + random.nextInt(4))
+                .collect(Collectors.joining("\n"));
+
+        return Recipe.builder()
+                .id(uuid())
+                .name(pick(STYLES) + " " + names.get(0).toLowerCase() + " " + pick(DISHES))
+                .instructions(instructions)
+                .ingredients(ingredients)
+                .vegetarian(vegetarian)
+                .build();
+    }
+
+    private String uuid() {
+        return new UUID(random.nextLong() & 0xffffffffffff0fffL | 0x4000L,
+                random.nextLong() & 0x3fffffffffffffffL | 0x8000000000000000L).toString();
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+}
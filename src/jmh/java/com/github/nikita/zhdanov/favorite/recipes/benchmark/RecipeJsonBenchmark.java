@@ -0,0 +1,84 @@
+package com.github.nikita.zhdanov.favorite.recipes.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of a recipe and of a search response, with the object mapper configured as in Spring MVC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeJsonBenchmark {
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private ObjectWriter recipeWriter;
+    private ObjectReader recipeReader;
+    private ObjectWriter responseWriter;
+    private ObjectReader responseReader;
+    private Recipe recipe;
+    private RecipeSearchResponse response;
+    private byte[] recipeJson;
+    private byte[] responseJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        recipeWriter = objectMapper.writerFor(Recipe.class);
+        recipeReader = objectMapper.readerFor(Recipe.class);
+        responseWriter = objectMapper.writerFor(RecipeSearchResponse.class);
+        responseReader = objectMapper.readerFor(RecipeSearchResponse.class);
+
+        var recipes = RecipeDataGenerator.generate(pageSize);
+        recipe = recipes.get(0);
+        response = RecipeSearchResponse.builder()
+                .recipes(recipes)
+                .pageNumber(0)
+                .pageSize(pageSize)
+                .currentNumberOfRecipes(pageSize)
+                .build();
+        recipeJson = recipeWriter.writeValueAsBytes(recipe);
+        responseJson = responseWriter.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serializeRecipe() throws IOException {
+        return recipeWriter.writeValueAsBytes(recipe);
+    }
+
+    @Benchmark
+    public Recipe deserializeRecipe() throws IOException {
+        return recipeReader.readValue(recipeJson);
+    }
+
+    @Benchmark
+    public byte[] serializeSearchResponse() throws IOException {
+        return responseWriter.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public RecipeSearchResponse deserializeSearchResponse() throws IOException {
+        return responseReader.readValue(responseJson);
+    }
+}
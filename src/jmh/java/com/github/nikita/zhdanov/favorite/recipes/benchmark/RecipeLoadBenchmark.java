@@ -0,0 +1,96 @@
+package com.github.nikita.zhdanov.favorite.recipes.benchmark;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Load test of GET /recipe/{id} over HTTP: every invocation sends a burst of concurrent requests and waits for all
+ * the responses. Compares the Tomcat thread pool, virtual threads ("virtual" needs a Java 21+ runtime) and the reactive
+ * WebFlux and R2DBC stack. The recipe cache is disabled so that every request reads the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecipeLoadBenchmark {
+    @Param("10000")
+    private int recipes;
+
+    @Param({"platform", "virtual", "reactive"})
+    private String stack;
+
+    @Param({"50", "500"})
+    private int concurrency;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private List<URI> recipeUris;
+    private int nextRecipe;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.startWeb(recipes,
+                "recipes.cache.recipes.maximum-size=0",
+                "recipes.execution.virtual-threads=" + "virtual".equals(stack),
+                "spring.profiles.active=" + ("reactive".equals(stack) ? "reactive" : "default"),
+                // The load test measures queueing, not rejections
+                "recipes.execution.database.acquire-timeout=1m");
+        var port = context.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newHttpClient();
+        recipeUris = RecipeDataGenerator.generate(recipes).stream()
+                .map(Recipe::getId)
+                .map(id -> URI.create("http://localhost:" + port + "/recipe/" + id))
+                .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int burst() {
+        var responses = IntStream.range(0, concurrency)
+                .mapToObj(i -> httpClient.sendAsync(HttpRequest.newBuilder(nextUri()).build(),
+                        HttpResponse.BodyHandlers.discarding()))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(responses).join();
+        for (var response : responses) {
+            @SuppressWarnings("unchecked")
+            var status = ((CompletableFuture<HttpResponse<Void>>) response).join().statusCode();
+            if (status != 200) {
+                throw new IllegalStateException("Unexpected response status " + status);
+            }
+        }
+        return responses.length;
+    }
+
+    private URI nextUri() {
+        nextRecipe = (nextRecipe + 1) % recipeUris.size();
+        return recipeUris.get(nextRecipe);
+    }
+}
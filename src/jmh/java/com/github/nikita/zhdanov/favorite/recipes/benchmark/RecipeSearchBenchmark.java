@@ -0,0 +1,164 @@
+package com.github.nikita.zhdanov.favorite.recipes.benchmark;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeSearchRepository;
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Searches through the database with every kind of filter. The search cache is disabled, so every call
+ * reaches the database. The "changing values" benchmarks search with other texts and ingredients on every call,
+ * like different users do, so a query which is rendered from the values has to be compiled again each time.
+ * The "include" and "exclude" filters list 1 or 10 ingredients, to compare the cost of longer lists. Longer lists also
+ * match fewer recipes, so more of them are read before a page is full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeSearchBenchmark {
+    @Param({"1000", "10000"})
+    private int recipes;
+
+    @Param({"none", "name", "instructions", "ingredient", "without-ingredient", "vegetarian", "all",
+            "include-1", "include-10", "exclude-1", "exclude-10"})
+    private String filters;
+
+    private static final int VALUES = 64;
+    private static final List<String> DISHES = List.of("pasta", "pizza", "salad", "soup", "curry", "risotto", "stew",
+            "pie");
+    private static final List<String> STEP_WORDS = List.of("oven", "bowl", "water", "golden", "salt", "olive");
+    private static final List<String> INGREDIENTS = List.of("Garlic", "Tomato", "Onion", "Potato", "Carrot", "Pepper",
+            "Spinach", "Mushroom", "Basil", "Rice");
+
+    private ConfigurableApplicationContext context;
+    private RecipeSearchRepository recipeSearchRepository;
+    private RecipeService recipeService;
+    private RecipeFilters recipeFilters;
+    private List<RecipeFilters> changingFilters;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(recipes,
+                "recipes.cache.recipes.maximum-size=0", "recipes.cache.searches.maximum-size=0");
+        recipeSearchRepository = context.getBean(RecipeSearchRepository.class);
+        recipeService = context.getBean(RecipeService.class);
+        recipeFilters = createFilters(filters, 0);
+        changingFilters = IntStream.range(0, VALUES).mapToObj(value -> createFilters(filters, value))
+                .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<String> findIds() {
+        return recipeSearchRepository.findIds(recipeFilters);
+    }
+
+    @Benchmark
+    public Collection<Recipe> search() {
+        return recipeService.search(recipeFilters);
+    }
+
+    @Benchmark
+    public List<String> findIdsWithChangingValues() {
+        return recipeSearchRepository.findIds(nextChangingFilters());
+    }
+
+    @Benchmark
+    public Collection<Recipe> searchWithChangingValues() {
+        return recipeService.search(nextChangingFilters());
+    }
+
+    private RecipeFilters nextChangingFilters() {
+        next = (next + 1) % VALUES;
+        return changingFilters.get(next);
+    }
+
+    private static RecipeFilters createFilters(String filters, int value) {
+        var dish = DISHES.get(value % DISHES.size());
+        var step = STEP_WORDS.get(value % STEP_WORDS.size());
+        var ingredient = INGREDIENTS.get(value % INGREDIENTS.size());
+        var recipeFilters = new RecipeFilters();
+        recipeFilters.setPageSize(100);
+        switch (filters) {
+            case "none":
+                break;
+            case "name":
+                recipeFilters.setRecipeName(containsText(dish));
+                break;
+            case "instructions":
+                recipeFilters.setInstructions(containsText(step));
+                break;
+            case "ingredient":
+                recipeFilters.setIngredientName(exactText(ingredient, false));
+                break;
+            case "without-ingredient":
+                recipeFilters.setIngredientName(exactText(ingredient, true));
+                break;
+            case "vegetarian":
+                recipeFilters.setVegetarian(true);
+                break;
+            case "include-1":
+            case "include-10":
+                recipeFilters.setIncludeIngredients(ingredients(filters, value));
+                break;
+            case "exclude-1":
+            case "exclude-10":
+                recipeFilters.setExcludeIngredients(ingredients(filters, value));
+                break;
+            case "all":
+                recipeFilters.setRecipeName(containsText(dish));
+                recipeFilters.setInstructions(containsText(step));
+                recipeFilters.setIngredientName(exactText(ingredient, false));
+                recipeFilters.setVegetarian(true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown filters " + filters);
+        }
+        return recipeFilters;
+    }
+
+    // The number after the dash, starting with the ingredient of the value
+    private static List<String> ingredients(String filters, int value) {
+        var count = Integer.parseInt(filters.substring(filters.indexOf('-') + 1));
+        return IntStream.range(0, count)
+                .mapToObj(index -> INGREDIENTS.get((value + index) % INGREDIENTS.size()))
+                .collect(Collectors.toList());
+    }
+
+    private static RecipeFilters.ContainsTextFilter containsText(String text) {
+        return RecipeFilters.ContainsTextFilter.builder().containsText(text).build();
+    }
+
+    private static RecipeFilters.ExactTextFilter exactText(String text, boolean reverse) {
+        var filter = RecipeFilters.ExactTextFilter.builder().exactText(text).build();
+        filter.setReverse(reverse);
+        return filter;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.nikita.zhdanov.favorite.recipes.benchmark;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Saves and reads single recipes through the service, with the recipe cache enabled or disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeServiceBenchmark {
+    @Param("10000")
+    private int recipes;
+
+    @Param({"0", "10000"})
+    private int cacheSize;
+
+    private ConfigurableApplicationContext context;
+    private RecipeService recipeService;
+    private List<String> recipeIds;
+    private RecipeDataGenerator newRecipes;
+    private int nextRecipe;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(recipes, "recipes.cache.recipes.maximum-size=" + cacheSize);
+        recipeService = context.getBean(RecipeService.class);
+        recipeIds = RecipeDataGenerator.generate(recipes).stream().map(Recipe::getId).collect(Collectors.toList());
+        // A different seed, so the saved recipes are new ones
+        newRecipes = new RecipeDataGenerator(RecipeDataGenerator.DEFAULT_SEED + 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Recipe get() {
+        nextRecipe = (nextRecipe + 1) % recipeIds.size();
+        return recipeService.get(recipeIds.get(nextRecipe));
+    }
+
+    @Benchmark
+    public Recipe save() {
+        var recipe = newRecipes.next();
+        recipe.getIngredients().forEach(ingredient -> ingredient.setId(null));
+        recipeService.save(recipe);
+        return recipe;
+    }
+}
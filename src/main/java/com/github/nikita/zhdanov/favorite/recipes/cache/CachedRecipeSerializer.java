@@ -0,0 +1,28 @@
+package com.github.nikita.zhdanov.favorite.recipes.cache;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+
+/**
+ * Writes the recipes of responses from RecipeJsonCache. The ObjectMapper of the application autowires its serializers,
+ * one created elsewhere (such as in a client) has no cache and writes the recipes as usual.
+ */
+public class CachedRecipeSerializer extends JsonSerializer<Recipe> {
+    @Autowired(required = false)
+    private RecipeJsonCache recipeJsonCache;
+
+    @Override
+    public void serialize(Recipe recipe, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        // A recipe without a version was not read from the database
+        if (recipeJsonCache == null || !recipeJsonCache.isEnabled() || recipe.getVersion() == null) {
+            provider.findValueSerializer(Recipe.class).serialize(recipe, generator, provider);
+            return;
+        }
+        generator.writeRawValue(recipeJsonCache.get(recipe).getJson());
+    }
+}
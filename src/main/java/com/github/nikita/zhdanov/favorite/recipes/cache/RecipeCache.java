@@ -0,0 +1,69 @@
+package com.github.nikita.zhdanov.favorite.recipes.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.model.CacheStatistics;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+@Component
+public class RecipeCache implements MeterBinder {
+    private final Cache<String, Recipe> cache;
+
+    public RecipeCache(@Value("${recipes.cache.recipes.maximum-size:10000}") long maximumSize,
+                       @Value("${recipes.cache.recipes.expire-after-write:10m}") Duration expireAfterWrite) {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public Recipe get(String id, Function<String, Recipe> loader) {
+        return cache.get(id, loader);
+    }
+
+    // Only the ids which are not cached are passed to the loader, at once
+    public Map<String, Recipe> getAll(Collection<String> ids, Function<List<String>, Map<String, Recipe>> loader) {
+        return cache.getAll(ids, missingIds -> {
+            var missing = new ArrayList<String>();
+            missingIds.forEach(missing::add);
+            return loader.apply(missing);
+        });
+    }
+
+    public Recipe getIfPresent(String id) {
+        return cache.getIfPresent(id);
+    }
+
+    @EventListener
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        cache.invalidate(event.getRecipeId());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStatistics statistics() {
+        return CacheStatistics.of(cache);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "recipes");
+    }
+}
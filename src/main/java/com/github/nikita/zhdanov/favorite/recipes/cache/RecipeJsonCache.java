@@ -0,0 +1,142 @@
+package com.github.nikita.zhdanov.favorite.recipes.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.model.CacheStatistics;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized JSON of recipes by id, together with the version it was serialized from, so popular recipes are not
+ * serialized again for every response. A recipe which is read in another version than the cached one (such as from
+ * RecipeCache right after a change) is serialized again. Entries are dropped on every change of their recipe as well,
+ * so the JSON of a deleted recipe isn't kept.
+ * <p>
+ * JSON of at least server.compression.min-response-size is gzipped once as well, GET /recipe/{id} sends it as it is.
+ */
+@Component
+public class RecipeJsonCache implements MeterBinder {
+    private final Cache<String, RecipeJson> cache;
+    private final ObjectWriter recipeWriter;
+    private final boolean enabled;
+    private final long compressionMinSize;
+
+    public RecipeJsonCache(ObjectMapper objectMapper,
+                           @Value("${recipes.cache.json.maximum-size:64MB}") DataSize maximumSize,
+                           @Value("${recipes.cache.json.expire-after-access:10m}") Duration expireAfterAccess,
+                           @Value("${server.compression.min-response-size:2KB}") DataSize compressionMinSize) {
+        cache = Caffeine.newBuilder()
+                // The text is kept as a string and as UTF-8 bytes
+                .<String, RecipeJson>weigher((id, json) -> 2 * json.getBytes().length
+                        + (json.getGzipped() == null ? 0 : json.getGzipped().length))
+                .maximumWeight(maximumSize.toBytes())
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        recipeWriter = objectMapper.writerFor(Recipe.class);
+        enabled = maximumSize.toBytes() > 0;
+        this.compressionMinSize = compressionMinSize.toBytes();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // JSON of the given version of the recipe, the recipe must have been read from the database
+    public RecipeJson get(Recipe recipe) {
+        var json = cache.getIfPresent(recipe.getId());
+        if (json != null && json.getVersion() == recipe.getVersion()) {
+            return json;
+        }
+        json = serialize(recipe);
+        // A concurrent request with a newer version keeps its entry
+        cache.asMap().merge(recipe.getId(), json,
+                (cached, serialized) -> cached.getVersion() > serialized.getVersion() ? cached : serialized);
+        return json;
+    }
+
+    private RecipeJson serialize(Recipe recipe) {
+        try {
+            var json = new SerializedString(recipeWriter.writeValueAsString(recipe));
+            var bytes = json.asUnquotedUTF8();
+            return new RecipeJson(recipe.getVersion(), json, bytes.length >= compressionMinSize ? gzip(bytes) : null);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        var compressed = new ByteArrayOutputStream(bytes.length / 4);
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    @EventListener
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        cache.invalidate(event.getRecipeId());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStatistics statistics() {
+        return CacheStatistics.of(cache);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "recipe-json");
+    }
+
+    public static class RecipeJson {
+        private final long version;
+        private final SerializedString json;
+        private final byte[] gzipped;
+
+        RecipeJson(long version, SerializedString json, byte[] gzipped) {
+            this.version = version;
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // Written into other JSON documents as it is
+        public SerializedString getJson() {
+            return json;
+        }
+
+        public byte[] getBytes() {
+            return json.asUnquotedUTF8();
+        }
+
+        // Null for the JSON which is too short to compress
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+    }
+}
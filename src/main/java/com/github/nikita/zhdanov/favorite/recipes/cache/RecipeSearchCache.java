@@ -0,0 +1,63 @@
+package com.github.nikita.zhdanov.favorite.recipes.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.model.CacheStatistics;
+import com.github.nikita.zhdanov.favorite.recipes.model.CanonicalFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Ids of the recipes found by a search, keyed by the canonical filters. Any change of any recipe starts a new
+ * generation: entries of the previous generations are never read again and age out of the cache.
+ */
+@Component
+public class RecipeSearchCache implements MeterBinder {
+    private final Cache<String, List<String>> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public RecipeSearchCache(@Value("${recipes.cache.searches.maximum-size:1000}") long maximumSize,
+                             @Value("${recipes.cache.searches.expire-after-write:1m}") Duration expireAfterWrite) {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public List<String> get(RecipeFilters filters, Function<RecipeFilters, List<String>> finder) {
+        // The generation is read before searching, so results of a search overlapping a change are never reused
+        var key = generation.get() + ":" + CanonicalFilters.page(filters);
+        return cache.get(key, ignored -> List.copyOf(finder.apply(filters)));
+    }
+
+    @EventListener
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public CacheStatistics statistics() {
+        return CacheStatistics.of(cache);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "searches");
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.nikita.zhdanov.favorite.recipes.config;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+public class FullTextSearchFunctionContributor implements MetadataBuilderContributor {
+    public static final String MATCH_BOOLEAN_MODE = "match_against_boolean_mode";
+    public static final String MATCH_NATURAL_LANGUAGE_MODE = "match_against_natural_language_mode";
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction(MATCH_BOOLEAN_MODE,
+                new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, "match(?1) against (?2 in boolean mode)"));
+        metadataBuilder.applySqlFunction(MATCH_NATURAL_LANGUAGE_MODE,
+                new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, "match(?1) against (?2 in natural language mode)"));
+    }
+}
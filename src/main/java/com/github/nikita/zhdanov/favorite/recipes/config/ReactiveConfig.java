@@ -0,0 +1,64 @@
+package com.github.nikita.zhdanov.favorite.recipes.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * R2DBC connections of the reactive API. They go to the same database as the JDBC ones (which still run Liquibase),
+ * so the connection settings are taken from the JDBC data source instead of being configured twice.
+ * <p>
+ * The R2DBC transaction manager is deliberately not a bean: the JPA one stays the only {@code TransactionManager}.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+    private static final String JDBC_PREFIX = "jdbc:";
+
+    @Value("${recipes.reactive.pool.max-size:10}")
+    private int maxPoolSize;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool reactiveConnectionFactory(DataSource dataSource) throws SQLException {
+        var jdbcDataSource = dataSource.unwrap(HikariDataSource.class);
+        var url = jdbcDataSource.getJdbcUrl();
+        // JDBC driver parameters don't apply to the R2DBC driver, the URL may also name the MySQL driver
+        var queryIndex = url.indexOf('?');
+        var options = ConnectionFactoryOptions.parse("r2dbc:" + url.substring(JDBC_PREFIX.length(),
+                        queryIndex < 0 ? url.length() : queryIndex))
+                .mutate()
+                .option(ConnectionFactoryOptions.DRIVER, "mariadb")
+                .option(ConnectionFactoryOptions.USER, jdbcDataSource.getUsername());
+        if (jdbcDataSource.getPassword() != null && !jdbcDataSource.getPassword().isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, jdbcDataSource.getPassword());
+        }
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("recipes-reactive")
+                .initialSize(1)
+                .maxSize(maxPoolSize)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+}
@@ -0,0 +1,210 @@
+package com.github.nikita.zhdanov.favorite.recipes.config;
+
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeSearchCache;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read replicas of the JDBC data source. Read-only transactions (GET /recipe/{id}, searches, exports) run on the
+ * replicas, changes on the primary. A replica may be behind the primary by up to max-lag, so:
+ * <ul>
+ * <li>a client which changed recipes gets a cookie, its reads go to the primary until the replicas caught up;</li>
+ * <li>changed recipes are dropped from the caches once more after max-lag, in case a stale copy was read back.</li>
+ * </ul>
+ * The reactive API keeps using the primary database.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("'${recipes.datasource.replicas.urls:}' != ''")
+public class ReadReplicaConfig {
+    static final String READ_PRIMARY_COOKIE = "recipes-read-primary-until";
+
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeSearchCache recipeSearchCache;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+
+    @Value("${recipes.datasource.replicas.max-lag:5s}")
+    private Duration maxLag;
+
+    private final ScheduledExecutorService invalidationExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+        var thread = new Thread(task, "recipe-replica-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Static, so the data source is wrapped without initializing this configuration early
+    @Bean
+    public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource)) {
+                    return bean;
+                }
+                var replicas = new ArrayList<DataSource>();
+                var urls = StringUtils.commaDelimitedListToStringArray(
+                        environment.getProperty("recipes.datasource.replicas.urls"));
+                for (var i = 0; i < urls.length; i++) {
+                    replicas.add(replica("recipes-replica-" + (i + 1), urls[i].trim(), environment));
+                }
+                var retryAfter = duration(environment, "recipes.datasource.replicas.retry-after", "10s");
+                log.info("Read-only transactions are routed to the replicas {}", Arrays.toString(urls));
+                return new RoutingDataSourceProxy(new ReplicaRoutingDataSource((DataSource) bean, replicas, retryAfter));
+            }
+        };
+    }
+
+    private static DataSource replica(String poolName, String url, Environment environment) {
+        var config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(url);
+        config.setUsername(environment.getProperty("recipes.datasource.replicas.username",
+                environment.getProperty("spring.datasource.username")));
+        config.setPassword(environment.getProperty("recipes.datasource.replicas.password",
+                environment.getProperty("spring.datasource.password")));
+        config.setReadOnly(true);
+        // Same driver settings (such as the prepared statement cache) as the primary
+        Binder.get(environment).bind("spring.datasource.hikari.data-source-properties",
+                Bindable.mapOf(String.class, String.class)).ifBound(properties -> properties.forEach(
+                config::addDataSourceProperty));
+        config.setMaximumPoolSize(environment.getProperty("recipes.datasource.replicas.maximum-pool-size",
+                Integer.class, 10));
+        // A replica which is down fails fast and is skipped, instead of holding up the start or the request
+        config.setConnectionTimeout(duration(environment, "recipes.datasource.replicas.connection-timeout", "1s")
+                .toMillis());
+        config.setInitializationFailTimeout(-1);
+        return new HikariDataSource(config);
+    }
+
+    private static Duration duration(Environment environment, String property, String defaultValue) {
+        return ApplicationConversionService.getSharedInstance()
+                .convert(environment.getProperty(property, defaultValue), Duration.class);
+    }
+
+    // Reads go to the primary while replicas are down, so the service stays up and the replicas are only reported
+    @Bean
+    public HealthIndicator replicasHealthIndicator(DataSource dataSource) throws SQLException {
+        var routingDataSource = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        return () -> {
+            var health = Health.up();
+            routingDataSource.availability().forEach((replica, available) ->
+                    health.withDetail("replica-" + replica, available ? "available" : "skipped"));
+            return health.build();
+        };
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public OncePerRequestFilter readYourWritesFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                var now = System.currentTimeMillis();
+                var readPrimaryUntil = readPrimaryUntil(request);
+                if (isChange(request)) {
+                    // Set before the chain, the response may be committed by the time the change is done
+                    var cookie = new Cookie(READ_PRIMARY_COOKIE, Long.toString(now + maxLag.toMillis()));
+                    cookie.setPath("/");
+                    cookie.setHttpOnly(true);
+                    cookie.setMaxAge((int) Math.max(maxLag.toSeconds(), 1));
+                    response.addCookie(cookie);
+                }
+                var previous = ReadReplicas.requirePrimary(readPrimaryUntil > now || ReadReplicas.isPrimaryRequired());
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    ReadReplicas.requirePrimary(previous);
+                }
+            }
+        };
+    }
+
+    // Searches are posted, but they don't change anything
+    private static boolean isChange(HttpServletRequest request) {
+        var method = request.getMethod();
+        return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method)
+                && !request.getRequestURI().endsWith("/search");
+    }
+
+    private static long readPrimaryUntil(HttpServletRequest request) {
+        var cookie = WebUtils.getCookie(request, READ_PRIMARY_COOKIE);
+        if (cookie == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // A read from a replica which didn't have the change yet may have put the old recipe back into the caches
+    @EventListener
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        invalidationExecutor.schedule(() -> {
+            recipeCache.onRecipeChanged(event);
+            recipeSearchCache.onRecipeChanged(event);
+            recipeJsonCache.onRecipeChanged(event);
+        }, maxLag.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        invalidationExecutor.shutdownNow();
+    }
+
+    // The pools are closed with the context, like the data source which is wrapped
+    private static class RoutingDataSourceProxy extends LazyConnectionDataSourceProxy implements Closeable {
+        RoutingDataSourceProxy(ReplicaRoutingDataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public void close() throws IOException {
+            ((ReplicaRoutingDataSource) obtainTargetDataSource()).close();
+        }
+    }
+}
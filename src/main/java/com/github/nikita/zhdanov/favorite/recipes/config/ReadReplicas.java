@@ -0,0 +1,23 @@
+package com.github.nikita.zhdanov.favorite.recipes.config;
+
+/**
+ * Reads of the current thread which must see the latest writes, such as the ones right after a client's own change,
+ * are sent to the primary database even in read-only transactions (see ReplicaRoutingDataSource).
+ */
+public final class ReadReplicas {
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> false);
+
+    private ReadReplicas() {
+    }
+
+    // Returns the previous setting, which the caller restores when it is done
+    public static boolean requirePrimary(boolean required) {
+        var previous = PRIMARY_REQUIRED.get();
+        PRIMARY_REQUIRED.set(required);
+        return previous;
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get();
+    }
+}
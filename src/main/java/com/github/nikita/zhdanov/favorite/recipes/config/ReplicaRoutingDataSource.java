@@ -0,0 +1,123 @@
+package com.github.nikita.zhdanov.favorite.recipes.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Connections of read-only transactions come from the replicas in turn, all others from the primary database.
+ * A replica which fails to give a connection is skipped for a while, when none is available the primary serves the
+ * reads. Must be used behind a LazyConnectionDataSourceProxy, so the connection is taken once the transaction is known
+ * to be read-only. Unwrapping goes to the primary data source.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Duration retryAfter;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration retryAfter) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).collect(Collectors.toList());
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || ReadReplicas.isPrimaryRequired()) {
+            return source.get(primary);
+        }
+        var first = next.getAndIncrement();
+        for (var i = 0; i < replicas.size(); i++) {
+            var replica = replicas.get(Math.floorMod(first + i, replicas.size()));
+            if (replica.isDown()) {
+                continue;
+            }
+            try {
+                return source.get(replica.dataSource);
+            } catch (SQLException e) {
+                replica.markDown();
+                log.warn("Read replica {} is skipped for {}: {}", replica.dataSource, retryAfter, e.getMessage());
+            }
+        }
+        return source.get(primary);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    // Replicas which are skipped after a failed connection, by their position in the configuration
+    public Map<Integer, Boolean> availability() {
+        var availability = new LinkedHashMap<Integer, Boolean>();
+        for (var i = 0; i < replicas.size(); i++) {
+            availability.put(i + 1, !replicas.get(i).isDown());
+        }
+        return availability;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (var replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+    }
+
+    private interface ConnectionSource {
+        Connection get(DataSource dataSource) throws SQLException;
+    }
+
+    private class Replica {
+        private final DataSource dataSource;
+        private volatile long downUntil = System.nanoTime();
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        boolean isDown() {
+            return System.nanoTime() - downUntil < 0;
+        }
+
+        void markDown() {
+            downUntil = System.nanoTime() + retryAfter.toNanos();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.nikita.zhdanov.favorite.recipes.config;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import org.hibernate.type.AbstractSingleColumnStandardBasicType;
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.AbstractTypeDescriptor;
+import org.hibernate.type.descriptor.sql.BinaryTypeDescriptor;
+
+/**
+ * Maps textual UUID ids to BINARY(16) columns. The entities keep String ids, so the REST API is not affected.
+ */
+public class UuidBinaryType extends AbstractSingleColumnStandardBasicType<String> {
+    public static final String NAME = "uuid-binary";
+
+    public UuidBinaryType() {
+        super(BinaryTypeDescriptor.INSTANCE, UuidStringTypeDescriptor.INSTANCE);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    private static class UuidStringTypeDescriptor extends AbstractTypeDescriptor<String> {
+        private static final UuidStringTypeDescriptor INSTANCE = new UuidStringTypeDescriptor();
+
+        private UuidStringTypeDescriptor() {
+            super(String.class);
+        }
+
+        @Override
+        public String toString(String value) {
+            return value;
+        }
+
+        @Override
+        public String fromString(String string) {
+            return string;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <X> X unwrap(String value, Class<X> type, WrapperOptions options) {
+            if (value == null) {
+                return null;
+            }
+            if (byte[].class.isAssignableFrom(type)) {
+                return (X) Uuids.toBytes(value);
+            }
+            if (String.class.isAssignableFrom(type)) {
+                return (X) value;
+            }
+            throw unknownUnwrap(type);
+        }
+
+        @Override
+        public <X> String wrap(X value, WrapperOptions options) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof byte[]) {
+                return Uuids.fromBytes((byte[]) value);
+            }
+            if (value instanceof String) {
+                return (String) value;
+            }
+            throw unknownWrap(value.getClass());
+        }
+    }
+}
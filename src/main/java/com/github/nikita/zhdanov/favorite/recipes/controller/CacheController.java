@@ -0,0 +1,55 @@
+package com.github.nikita.zhdanov.favorite.recipes.controller;
+
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeSearchCache;
+import com.github.nikita.zhdanov.favorite.recipes.model.CacheStatistics;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("cache")
+public class CacheController {
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeSearchCache recipeSearchCache;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+
+    @GetMapping
+    @ApiOperation("Get statistics of the in-process caches.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Statistics by cache name."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<Map<String, CacheStatistics>> statistics() {
+        return ResponseEntity.ok(Map.of(
+                "recipes", recipeCache.statistics(),
+                "searches", recipeSearchCache.statistics(),
+                "json", recipeJsonCache.statistics()
+        ));
+    }
+
+    @DeleteMapping
+    @ApiOperation("Drop everything from the in-process caches, for example after the database was changed manually.")
+    @ApiResponses({
+            @ApiResponse(code = 204, message = "Caches cleared."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<?> invalidateAll() {
+        recipeCache.invalidateAll();
+        recipeSearchCache.invalidateAll();
+        recipeJsonCache.invalidateAll();
+        return ResponseEntity.status(204).build();
+    }
+}
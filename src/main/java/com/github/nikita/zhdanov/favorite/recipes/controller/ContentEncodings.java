@@ -0,0 +1,37 @@
+package com.github.nikita.zhdanov.favorite.recipes.controller;
+
+/**
+ * Content codings of responses which are compressed before the server's own compression sees them.
+ */
+final class ContentEncodings {
+    static final String GZIP = "gzip";
+
+    private ContentEncodings() {
+    }
+
+    // Whether the Accept-Encoding header allows gzip, a missing header only means that nothing was asked for
+    static boolean acceptsGzip(String header) {
+        if (header == null) {
+            return false;
+        }
+        for (var coding : header.split(",")) {
+            var parts = coding.split(";");
+            var name = parts[0].trim();
+            if (name.equalsIgnoreCase(GZIP) || name.equals("*")) {
+                return parts.length < 2 || !isZeroQuality(parts[1].trim());
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String parameter) {
+        if (!parameter.startsWith("q=")) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(parameter.substring(2)) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
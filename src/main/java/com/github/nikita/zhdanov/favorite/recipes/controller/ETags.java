@@ -0,0 +1,48 @@
+package com.github.nikita.zhdanov.favorite.recipes.controller;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Entity tags of recipes: the version of the recipe in quotes, with a suffix for the gzipped JSON.
+ */
+final class ETags {
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // Another representation of the same version needs another strong tag
+    static String gzipped(long version) {
+        return "\"" + version + "-gzip\"";
+    }
+
+    // If-None-Match compares tags weakly, If-Match strongly, so a weak tag never matches there.
+    // The tag of the gzipped JSON stands for its version as well.
+    static boolean matches(String header, long version, boolean weak) {
+        return matching(header, version, weak) != null;
+    }
+
+    // The tag of the version the header matches (the gzipped one if the caller has the gzipped JSON), null if none
+    static String matching(String header, long version, boolean weak) {
+        for (var tag : header.split(",")) {
+            tag = tag.trim();
+            if (weak && tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(of(version))) {
+                return of(version);
+            }
+            if (tag.equals(gzipped(version))) {
+                return gzipped(version);
+            }
+        }
+        return null;
+    }
+
+    // Versions the If-Match header allows to change, null if the header is missing
+    static LongPredicate ifMatch(String header) {
+        return header == null ? null : version -> matches(header, version, false);
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.nikita.zhdanov.favorite.recipes.controller;
+
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeService;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("ingredient-terms")
+public class IngredientTermsController {
+    @Autowired
+    private RecipeService recipeService;
+
+    @PostMapping("rebuild")
+    @ApiOperation("Recompute the denormalized ingredients of all recipes used by the single-table ingredient filter.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Number of recipes which were updated."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<Map<String, Integer>> rebuild() {
+        return ResponseEntity.ok(Map.of("recipes", recipeService.rebuildIngredientTerms()));
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.nikita.zhdanov.favorite.recipes.controller;
+
+import com.github.nikita.zhdanov.favorite.recipes.error.InvalidContinuationToken;
+import com.github.nikita.zhdanov.favorite.recipes.error.InvalidRecipeId;
+import com.github.nikita.zhdanov.favorite.recipes.error.RecipeNotExists;
+import com.github.nikita.zhdanov.favorite.recipes.model.ContinuationToken;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeBatchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.service.ReactiveRecipeService;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * WebFlux variant of {@link RecipeController} backed by R2DBC, enabled by the "reactive" Spring profile.
+ * The bulk import, the If-Match conditions of changes and the change feed are only available in the servlet variant.
+ */
+@RestController
+@RequestMapping("recipe")
+@Profile("reactive")
+public class ReactiveRecipeController {
+    @Autowired
+    private ReactiveRecipeService reactiveRecipeService;
+
+    @Value("${recipes.batch.max-ids:100}")
+    private int batchMaxIds;
+
+    @PutMapping(value = "/{id}")
+    @ApiOperation("Add new or update existing recipe.")
+    @ApiResponses({
+            @ApiResponse(code = 204, message = "Recipe saved."),
+            @ApiResponse(code = 400, message = "Invalid request body provided."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public Mono<ResponseEntity<?>> put(
+            @ApiParam(
+                    value = "For new recipes should be generated by caller. Must be a UUID.",
+                    example = "12345678-1234-1234-1234-1234567890ab"
+            ) @PathVariable("id") String id,
+            @Valid @RequestBody Recipe recipe
+    ) {
+        recipe.setId(id);
+        return reactiveRecipeService.save(recipe)
+                .then(Mono.<ResponseEntity<?>>fromSupplier(() -> ResponseEntity.status(204).build()))
+                .onErrorResume(InvalidRecipeId.class, e -> Mono.just(ResponseEntity.status(400).body(e.getMessage())));
+    }
+
+    @DeleteMapping(value = "/{id}")
+    @ApiOperation("Delete existing recipe by id.")
+    @ApiResponses({
+            @ApiResponse(code = 204, message = "Recipe removed."),
+            @ApiResponse(code = 400, message = "Invalid request body provided."),
+            @ApiResponse(code = 404, message = "Recipe not found."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public Mono<ResponseEntity<?>> delete(
+            @ApiParam(
+                    value = "id of the recipe to remove.",
+                    example = "12345678-1234-1234-1234-1234567890ab"
+            ) @NotBlank @PathVariable("id") String id
+    ) {
+        return reactiveRecipeService.delete(id)
+                .then(Mono.<ResponseEntity<?>>fromSupplier(() -> ResponseEntity.status(204).build()))
+                .onErrorResume(RecipeNotExists.class, e -> Mono.just(ResponseEntity.status(404).body(e.getMessage())));
+    }
+
+    @GetMapping(value = "/{id}")
+    @ApiOperation("Get recipe by id.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Recipe found.", response = Recipe.class),
+            @ApiResponse(code = 304, message = "Recipe wasn't changed since the version in If-None-Match."),
+            @ApiResponse(code = 400, message = "Invalid request."),
+            @ApiResponse(code = 404, message = "Recipe not found."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public Mono<ResponseEntity<?>> get(
+            @ApiParam(
+                    value = "id of the recipe to remove.",
+                    example = "12345678-1234-1234-1234-1234567890ab"
+            ) @NotBlank @PathVariable("id") String id,
+            @ApiParam(value = "ETag of the version the caller has.", example = "\"1\"")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        var notModified = ifNoneMatch == null
+                ? Mono.<ResponseEntity<?>>empty()
+                : reactiveRecipeService.getVersion(id)
+                        .filter(version -> ETags.matches(ifNoneMatch, version, true))
+                        .<ResponseEntity<?>>map(version -> ResponseEntity.status(304).eTag(ETags.of(version)).build());
+        return notModified
+                .switchIfEmpty(Mono.defer(() -> reactiveRecipeService.get(id)
+                        .map(recipe -> ResponseEntity.ok().eTag(ETags.of(recipe.getVersion())).body(recipe))))
+                .onErrorResume(RecipeNotExists.class, e -> Mono.just(ResponseEntity.status(404).body(e.getMessage())));
+    }
+
+    @GetMapping(value = "/batch")
+    @ApiOperation("Get recipes by ids in one request.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Recipes in the order of the ids, missing ones are marked with an error.",
+                    response = RecipeBatchResponse.class),
+            @ApiResponse(code = 400, message = "Too many ids requested."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public Mono<ResponseEntity<?>> getAll(
+            @ApiParam(
+                    value = "Comma separated ids of the recipes.",
+                    example = "12345678-1234-1234-1234-1234567890ab,12345678-1234-1234-1234-1234567890ac"
+            ) @RequestParam("ids") List<String> ids
+    ) {
+        if (ids.size() > batchMaxIds) {
+            return Mono.just(ResponseEntity.status(400).body("At most " + batchMaxIds + " ids can be requested at once"));
+        }
+        return reactiveRecipeService.getAll(ids)
+                .map(recipes -> ResponseEntity.ok(RecipeBatchResponse.of(ids, recipes)));
+    }
+
+    @PostMapping(value = "/search")
+    @ApiOperation("Get all recipes or search using filters.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Search request proceed successfully.", response = Recipe.class),
+            @ApiResponse(code = 400, message = "Invalid request."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public Mono<ResponseEntity<?>> search(@Valid @RequestBody(required = false) RecipeFilters filters) {
+        var searchFilters = filters == null ? new RecipeFilters() : filters;
+        searchFilters.setPageSize(searchFilters.getPageSize() == null ? 100 : searchFilters.getPageSize());
+        searchFilters.setTopIngredients(
+                searchFilters.getTopIngredients() == null ? 10 : searchFilters.getTopIngredients());
+
+        var facets = searchFilters.isIncludeCounts()
+                ? reactiveRecipeService.countFacets(searchFilters).map(Optional::of)
+                : Mono.just(Optional.<RecipeFacets>empty());
+        return reactiveRecipeService.search(searchFilters)
+                .collectList()
+                .zipWith(facets)
+                .<ResponseEntity<?>>map(pageAndFacets -> {
+                    var recipes = pageAndFacets.getT1();
+                    var recipeSearchResponse = RecipeSearchResponse.builder()
+                            .recipes(recipes)
+                            .pageSize(searchFilters.getPageSize())
+                            .pageNumber(searchFilters.getPageNumber())
+                            .currentNumberOfRecipes(recipes.size())
+                            .build();
+                    if (recipes.size() == searchFilters.getPageSize()) {
+                        var lastRecipe = recipes.get(recipes.size() - 1);
+                        recipeSearchResponse.setContinuationToken(
+                                ContinuationToken.encode(searchFilters, lastRecipe.getId()));
+                    }
+                    pageAndFacets.getT2().ifPresent(counts -> {
+                        recipeSearchResponse.setTotalNumberOfRecipes(counts.getVegetarian() + counts.getNonVegetarian());
+                        recipeSearchResponse.setFacets(counts);
+                    });
+                    return ResponseEntity.ok(recipeSearchResponse);
+                })
+                .onErrorResume(InvalidContinuationToken.class,
+                        e -> Mono.just(ResponseEntity.status(400).body(e.getMessage())));
+    }
+
+    @PostMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ApiOperation("Stream all recipes matching the filters as newline delimited JSON. Pagination is ignored.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Recipes are streamed one per line.", response = Recipe.class),
+            @ApiResponse(code = 400, message = "Invalid request."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public Flux<Recipe> export(@Valid @RequestBody(required = false) RecipeFilters filters) {
+        // Rows are read from the database as the client consumes the recipes
+        return reactiveRecipeService.export(filters == null ? new RecipeFilters() : filters);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.nikita.zhdanov.favorite.recipes.controller;
+
+import com.github.nikita.zhdanov.favorite.recipes.error.DatabaseBusy;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChangesResponse;
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeChangeFeed;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("recipe/changes")
+@Profile("!reactive")
+public class RecipeChangesController {
+    @Autowired
+    private RecipeChangeFeed recipeChangeFeed;
+
+    @Value("${recipes.changes.max-limit:1000}")
+    private int maxLimit;
+    @Value("${recipes.changes.max-wait:30s}")
+    private Duration maxWait;
+
+    @GetMapping
+    @ApiOperation("Get the changes of the recipes after a sequence number, in the order they were committed. " +
+            "Ask again after the lastSequence of the response to get the next ones.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Changes after the sequence number, none if the wait is over.",
+                    response = RecipeChangesResponse.class),
+            @ApiResponse(code = 400, message = "Invalid sequence number, limit or wait."),
+            @ApiResponse(code = 503, message = "Database is busy."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public CompletableFuture<ResponseEntity<?>> changes(
+            @ApiParam(value = "Sequence number of the last change the caller has, 0 to get every recipe.", example = "0")
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @ApiParam(value = "Maximum number of changes. Max = recipes.changes.max-limit, default = 100", example = "100")
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @ApiParam(value = "Seconds to wait for a change when there is none yet (long polling). " +
+                    "Max = recipes.changes.max-wait, default = 0", example = "30")
+            @RequestParam(value = "wait", defaultValue = "0") long waitSeconds
+    ) {
+        if (after < 0) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(400).body("Sequence number must not be negative"));
+        }
+        if (limit < 1 || limit > maxLimit) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(400).body("Limit must be between 1 and " + maxLimit));
+        }
+        if (waitSeconds < 0 || waitSeconds > maxWait.toSeconds()) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(400).body("Wait must be between 0 and " + maxWait.toSeconds() + " seconds"));
+        }
+        return recipeChangeFeed.changesAfter(after, limit, Duration.ofSeconds(waitSeconds)).thenApply(ResponseEntity::ok);
+    }
+
+    @ExceptionHandler(DatabaseBusy.class)
+    public ResponseEntity<String> busy(DatabaseBusy e) {
+        return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
+    }
+}
@@ -1,44 +1,100 @@
 package com.github.nikita.zhdanov.favorite.recipes.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.error.DatabaseBusy;
+import com.github.nikita.zhdanov.favorite.recipes.error.ExportTimedOut;
+import com.github.nikita.zhdanov.favorite.recipes.error.InvalidContinuationToken;
+import com.github.nikita.zhdanov.favorite.recipes.error.InvalidRecipeId;
 import com.github.nikita.zhdanov.favorite.recipes.error.RecipeNotExists;
+import com.github.nikita.zhdanov.favorite.recipes.error.RecipeVersionMismatch;
+import com.github.nikita.zhdanov.favorite.recipes.error.WriteBehindPending;
+import com.github.nikita.zhdanov.favorite.recipes.error.WriteBehindQueueFull;
+import com.github.nikita.zhdanov.favorite.recipes.metrics.SearchMetrics;
+import com.github.nikita.zhdanov.favorite.recipes.model.ContinuationToken;
 import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeBatchResponse;
 import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeImportResponse;
 import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeImportService;
 import com.github.nikita.zhdanov.favorite.recipes.service.RecipeService;
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeWriteBehind;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("recipe")
+@Profile("!reactive")
 public class RecipeController {
     @Autowired
     private RecipeService recipeService;
+    @Autowired
+    private RecipeImportService recipeImportService;
+    // Only with recipes.write-behind.enabled
+    @Autowired(required = false)
+    private RecipeWriteBehind recipeWriteBehind;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private SearchMetrics searchMetrics;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+
+    @Value("${recipes.batch.max-ids:100}")
+    private int batchMaxIds;
 
     @PutMapping(value = "/{id}")
     @ApiOperation("Add new or update existing recipe.")
     @ApiResponses({
+            @ApiResponse(code = 202, message = "Recipe accepted by the write-behind queue, it is saved later."),
             @ApiResponse(code = 204, message = "Recipe saved."),
             @ApiResponse(code = 400, message = "Invalid request body provided."),
+            @ApiResponse(code = 412, message = "Recipe doesn't exist or was changed since the version in If-Match."),
             @ApiResponse(code = 500, message = "Internal server error.")
     })
     public ResponseEntity<?> put(
             @ApiParam(
-                    value = "For new recipes should be generated by caller (UUID recommended). Max - 36 symbols.",
+                    value = "For new recipes should be generated by caller. Must be a UUID.",
                     example = "12345678-1234-1234-1234-1234567890ab"
             ) @PathVariable("id") String id,
+            @ApiParam(value = "ETag of the version the update is based on.", example = "\"1\"")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody Recipe recipe
     ) {
         recipe.setId(id);
-        recipeService.save(recipe);
-        return ResponseEntity.status(204).build();
+        try {
+            // A conditional save needs the current version, so it is never deferred
+            if (recipeWriteBehind != null && ifMatch == null) {
+                recipeWriteBehind.enqueue(recipe);
+                return ResponseEntity.status(202).build();
+            }
+            awaitWriteBehind(id);
+            recipeService.save(recipe, ETags.ifMatch(ifMatch));
+        } catch (InvalidRecipeId e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (RecipeVersionMismatch e) {
+            return ResponseEntity.status(412).body(e.getMessage());
+        }
+        return ResponseEntity.status(204).eTag(ETags.of(recipe.getVersion())).build();
     }
 
     @DeleteMapping(value = "/{id}")
@@ -47,19 +103,25 @@ public class RecipeController {
             @ApiResponse(code = 204, message = "Recipe removed."),
             @ApiResponse(code = 400, message = "Invalid request body provided."),
             @ApiResponse(code = 404, message = "Recipe not found."),
+            @ApiResponse(code = 412, message = "Recipe was changed since the version in If-Match."),
             @ApiResponse(code = 500, message = "Internal server error.")
     })
     public ResponseEntity<?> delete(
             @ApiParam(
                     value = "id of the recipe to remove.",
                     example = "12345678-1234-1234-1234-1234567890ab"
-            ) @NotBlank @PathVariable("id") String id
+            ) @NotBlank @PathVariable("id") String id,
+            @ApiParam(value = "ETag of the version the removal is based on.", example = "\"1\"")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
         try {
-            recipeService.delete(id);
+            awaitWriteBehind(id);
+            recipeService.delete(id, ETags.ifMatch(ifMatch));
             return ResponseEntity.status(204).build();
         } catch (RecipeNotExists e) {
             return ResponseEntity.status(404).body(e.getMessage());
+        } catch (RecipeVersionMismatch e) {
+            return ResponseEntity.status(412).body(e.getMessage());
         }
     }
 
@@ -67,6 +129,7 @@ public class RecipeController {
     @ApiOperation("Get recipe by id.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Recipe found.", response = Recipe.class),
+            @ApiResponse(code = 304, message = "Recipe wasn't changed since the version in If-None-Match."),
             @ApiResponse(code = 400, message = "Invalid request."),
             @ApiResponse(code = 404, message = "Recipe not found."),
             @ApiResponse(code = 500, message = "Internal server error.")
@@ -75,16 +138,70 @@ public class RecipeController {
             @ApiParam(
                     value = "id of the recipe to remove.",
                     example = "12345678-1234-1234-1234-1234567890ab"
-            ) @NotBlank @PathVariable("id") String id
+            ) @NotBlank @PathVariable("id") String id,
+            @ApiParam(value = "ETag of the version the caller has.", example = "\"1\"")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @ApiParam(value = "Content codings the caller accepts, large recipes are sent gzipped.", example = "gzip")
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
         try {
+            // Only the version is looked up for a conditional request, the recipe is read if it was changed
+            if (ifNoneMatch != null) {
+                var version = recipeService.getVersion(id);
+                var matchingTag = ETags.matching(ifNoneMatch, version, true);
+                if (matchingTag != null) {
+                    // The 304 has the headers of the representation the caller has
+                    var notModified = ResponseEntity.status(304).eTag(matchingTag);
+                    if (recipeJsonCache.isEnabled()) {
+                        notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                    }
+                    return notModified.build();
+                }
+            }
             var recipe = recipeService.get(id);
-            return ResponseEntity.ok(recipe);
+            if (recipeJsonCache.isEnabled()) {
+                return cachedJson(recipe, acceptEncoding);
+            }
+            return ResponseEntity.ok().eTag(ETags.of(recipe.getVersion())).body(recipe);
         } catch (RecipeNotExists e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
+    // The server doesn't compress responses with a strong ETag, so the recipe is sent gzipped from the cache
+    private ResponseEntity<byte[]> cachedJson(Recipe recipe, String acceptEncoding) {
+        var json = recipeJsonCache.get(recipe);
+        var response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (json.getGzipped() != null && ContentEncodings.acceptsGzip(acceptEncoding)) {
+            return response.eTag(ETags.gzipped(recipe.getVersion()))
+                    .header(HttpHeaders.CONTENT_ENCODING, ContentEncodings.GZIP)
+                    .body(json.getGzipped());
+        }
+        return response.eTag(ETags.of(recipe.getVersion())).body(json.getBytes());
+    }
+
+    @GetMapping(value = "/batch")
+    @ApiOperation("Get recipes by ids in one request.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Recipes in the order of the ids, missing ones are marked with an error.",
+                    response = RecipeBatchResponse.class),
+            @ApiResponse(code = 400, message = "Too many ids requested."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<?> getAll(
+            @ApiParam(
+                    value = "Comma separated ids of the recipes.",
+                    example = "12345678-1234-1234-1234-1234567890ab,12345678-1234-1234-1234-1234567890ac"
+            ) @RequestParam("ids") List<String> ids
+    ) {
+        if (ids.size() > batchMaxIds) {
+            return ResponseEntity.status(400).body("At most " + batchMaxIds + " ids can be requested at once");
+        }
+        return ResponseEntity.ok(RecipeBatchResponse.of(ids, recipeService.getAll(ids)));
+    }
+
     @PostMapping(value = "/search")
     @ApiOperation("Get all recipes or search using filters.")
     @ApiResponses({
@@ -97,16 +214,112 @@ public class RecipeController {
             filters = new RecipeFilters();
         }
         filters.setPageSize(filters.getPageSize() == null ? 100 : filters.getPageSize());
+        filters.setTopIngredients(filters.getTopIngredients() == null ? 10 : filters.getTopIngredients());
+
+        // The facets are counted within the measured time too, failed searches are measured by their outcome
+        var metricsRequest = searchMetrics.start();
+        var outcome = SearchMetrics.SERVER_ERROR;
+        var rows = 0;
+        try {
+            var recipes = recipeService.search(filters);
+            var recipeSearchResponse = RecipeSearchResponse.builder()
+                    .recipes(recipes)
+                    .pageSize(filters.getPageSize())
+                    .pageNumber(filters.getPageNumber())
+                    .currentNumberOfRecipes(recipes.size())
+                    .build();
+            if (recipes.size() == filters.getPageSize()) {
+                var lastRecipe = recipes.stream().reduce((first, second) -> second).orElseThrow();
+                recipeSearchResponse.setContinuationToken(ContinuationToken.encode(filters, lastRecipe.getId()));
+            }
+            if (filters.isIncludeCounts()) {
+                var facets = recipeService.countFacets(filters);
+                recipeSearchResponse.setTotalNumberOfRecipes(facets.getVegetarian() + facets.getNonVegetarian());
+                recipeSearchResponse.setFacets(facets);
+            }
 
-        var recipes = recipeService.search(filters);
+            rows = recipes.size();
+            outcome = SearchMetrics.SUCCESS;
+            return ResponseEntity.ok(recipeSearchResponse);
+        } catch (InvalidContinuationToken e) {
+            outcome = SearchMetrics.CLIENT_ERROR;
+            return ResponseEntity.status(400).body(e.getMessage());
+        } finally {
+            searchMetrics.stop(metricsRequest, filters, rows, outcome);
+        }
+    }
 
-        var recipeSearchResponse = RecipeSearchResponse.builder()
-                .recipes(recipes)
-                .pageSize(filters.getPageSize())
-                .pageNumber(filters.getPageNumber())
-                .currentNumberOfRecipes(recipes.size())
-                .build();
+    @PostMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ApiOperation("Stream all recipes matching the filters as newline delimited JSON. Pagination is ignored.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Recipes are streamed one per line. An export stopped by the timeout " +
+                    "ends with an error line and an incomplete response.", response = Recipe.class),
+            @ApiResponse(code = 400, message = "Invalid request."),
+            @ApiResponse(code = 503, message = "Too many exports are running."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<StreamingResponseBody> export(@Valid @RequestBody(required = false) RecipeFilters filters) {
+        var exportFilters = filters == null ? new RecipeFilters() : filters;
+        var recipeWriter = objectMapper.writerFor(Recipe.class);
+
+        var exportPermit = recipeService.acquireExportPermit();
+        StreamingResponseBody body = outputStream -> {
+            try {
+                recipeService.export(exportPermit, exportFilters, recipe -> {
+                    try {
+                        outputStream.write(recipeWriter.writeValueAsBytes(recipe));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (ExportTimedOut e) {
+                // The status is sent already, so the last line says why the export is incomplete and the rethrown
+                // exception cuts the response off instead of finishing it like a complete export
+                outputStream.write(objectMapper.writeValueAsBytes(Map.of("error", e.getMessage())));
+                outputStream.write('\n');
+                outputStream.flush();
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation("Add new or update existing recipes in bulk. Ingredients of the updated recipes are replaced.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Import finished, failed recipes are listed in the response.",
+                    response = RecipeImportResponse.class),
+            @ApiResponse(code = 400, message = "Invalid request body provided."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<RecipeImportResponse> bulkImport(
+            @ApiParam(value = "Recipes to import, each of them must have an id.") @RequestBody List<Recipe> recipes
+    ) {
+        return ResponseEntity.ok(recipeImportService.importRecipes(recipes.iterator()));
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ApiOperation("Add new or update existing recipes in bulk from newline delimited JSON, one recipe per line. " +
+            "Ingredients of the updated recipes are replaced.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Import finished, failed recipes are listed in the response.",
+                    response = RecipeImportResponse.class),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<RecipeImportResponse> bulkImportNdjson(InputStream body) {
+        return ResponseEntity.ok(recipeImportService.importRecipes(recipeImportService.readNdjson(body)));
+    }
+
+    // The saves accepted before a change which is not deferred are written first, so they can't overwrite it later
+    private void awaitWriteBehind(String id) {
+        if (recipeWriteBehind != null) {
+            recipeWriteBehind.awaitWritten(id);
+        }
+    }
 
-        return ResponseEntity.ok(recipeSearchResponse);
+    @ExceptionHandler({DatabaseBusy.class, WriteBehindQueueFull.class, WriteBehindPending.class})
+    public ResponseEntity<String> busy(RuntimeException e) {
+        return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
     }
 }
@@ -0,0 +1,31 @@
+package com.github.nikita.zhdanov.favorite.recipes.controller;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.WriteBehindStatus;
+import com.github.nikita.zhdanov.favorite.recipes.service.RecipeWriteBehind;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("write-behind")
+@ConditionalOnProperty(name = "recipes.write-behind.enabled", havingValue = "true")
+public class WriteBehindController {
+    @Autowired
+    private RecipeWriteBehind recipeWriteBehind;
+
+    @GetMapping
+    @ApiOperation("Get the depth and the lag of the write-behind queue.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Status of the queue."),
+            @ApiResponse(code = 500, message = "Internal server error.")
+    })
+    public ResponseEntity<WriteBehindStatus> status() {
+        return ResponseEntity.ok(recipeWriteBehind.status());
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.nikita.zhdanov.favorite.recipes.error;
+
+import java.time.Duration;
+
+public class DatabaseBusy extends RuntimeException {
+    public DatabaseBusy(Duration waited) {
+        super("Database is busy, no connection became available in " + waited.toMillis() + " ms");
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.nikita.zhdanov.favorite.recipes.error;
+
+import java.time.Duration;
+
+public class ExportTimedOut extends RuntimeException {
+    public ExportTimedOut(Duration timeout) {
+        super("Export was stopped after " + timeout.toMillis() + " ms");
+    }
+}
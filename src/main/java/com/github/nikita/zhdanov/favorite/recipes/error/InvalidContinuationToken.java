@@ -0,0 +1,7 @@
+package com.github.nikita.zhdanov.favorite.recipes.error;
+
+public class InvalidContinuationToken extends RuntimeException {
+    public InvalidContinuationToken(String token) {
+        super("Continuation token " + token + " is invalid or was issued for different filters");
+    }
+}
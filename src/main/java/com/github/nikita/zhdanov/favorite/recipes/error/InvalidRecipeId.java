@@ -0,0 +1,7 @@
+package com.github.nikita.zhdanov.favorite.recipes.error;
+
+public class InvalidRecipeId extends RuntimeException {
+    public InvalidRecipeId(String id) {
+        super("Id " + id + " is not a UUID");
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.nikita.zhdanov.favorite.recipes.error;
+
+public class RecipeVersionMismatch extends RuntimeException {
+    public RecipeVersionMismatch(String id) {
+        super("Recipe with id " + id + " was changed, its current version doesn't match the If-Match header");
+    }
+}
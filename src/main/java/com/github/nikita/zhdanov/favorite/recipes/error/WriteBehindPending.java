@@ -0,0 +1,9 @@
+package com.github.nikita.zhdanov.favorite.recipes.error;
+
+import java.time.Duration;
+
+public class WriteBehindPending extends RuntimeException {
+    public WriteBehindPending(String id, Duration waited) {
+        super("Accepted saves of recipe " + id + " were not written in " + waited.toMillis() + " ms");
+    }
+}
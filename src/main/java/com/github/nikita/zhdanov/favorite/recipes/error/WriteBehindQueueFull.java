@@ -0,0 +1,7 @@
+package com.github.nikita.zhdanov.favorite.recipes.error;
+
+public class WriteBehindQueueFull extends RuntimeException {
+    public WriteBehindQueueFull(int queued) {
+        super("Write-behind queue is full, " + queued + " saves are waiting to be written");
+    }
+}
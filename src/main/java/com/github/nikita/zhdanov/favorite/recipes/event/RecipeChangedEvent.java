@@ -0,0 +1,25 @@
+package com.github.nikita.zhdanov.favorite.recipes.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published after a recipe was added, updated or removed. Listeners drop whatever they keep about the recipe.
+ * <p>
+ * To keep several nodes coherent, forward the local events to the other nodes (for example through a message
+ * broker) and publish them there with {@link #remote(String)}: remote events must not be forwarded again.
+ */
+@Data
+@AllArgsConstructor
+public class RecipeChangedEvent {
+    private final String recipeId;
+    private final boolean local;
+
+    public static RecipeChangedEvent local(String recipeId) {
+        return new RecipeChangedEvent(recipeId, true);
+    }
+
+    public static RecipeChangedEvent remote(String recipeId) {
+        return new RecipeChangedEvent(recipeId, false);
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.nikita.zhdanov.favorite.recipes.execution;
+
+import com.github.nikita.zhdanov.favorite.recipes.error.DatabaseBusy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of requests working with the database to the size of the connection pool. The rest wait
+ * in a fair queue on a semaphore (cheap with virtual threads) instead of on the pool, and give up after a timeout.
+ * A thread already holding a permit doesn't take another one, so nested calls can't deadlock.
+ * <p>
+ * Exports hold their connection for as long as the client reads, so they take permits of their own and can't
+ * starve the other requests. The export permit is taken by the request thread before the response starts, and
+ * released by the export streamed on another thread.
+ */
+@Component
+public class DatabaseBulkhead {
+    private final Semaphore permits;
+    private final Semaphore exportPermits;
+    private final Duration acquireTimeout;
+    private final ThreadLocal<Boolean> holdsPermit = ThreadLocal.withInitial(() -> false);
+
+    public DatabaseBulkhead(@Value("${recipes.execution.database.permits:8}") int permits,
+                            @Value("${recipes.execution.database.export-permits:2}") int exportPermits,
+                            @Value("${recipes.execution.database.acquire-timeout:5s}") Duration acquireTimeout) {
+        this.permits = new Semaphore(permits, true);
+        this.exportPermits = new Semaphore(exportPermits, true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public <T> T call(Supplier<T> action) {
+        return call(permits, action);
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public ExportPermit acquireExport() {
+        acquire(exportPermits);
+        return new ExportPermit();
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int queueLength() {
+        return permits.getQueueLength();
+    }
+
+    private <T> T call(Semaphore semaphore, Supplier<T> action) {
+        if (holdsPermit.get()) {
+            return action.get();
+        }
+        acquire(semaphore);
+        holdsPermit.set(true);
+        try {
+            return action.get();
+        } finally {
+            holdsPermit.set(false);
+            semaphore.release();
+        }
+    }
+
+    private void acquire(Semaphore semaphore) {
+        try {
+            if (!semaphore.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new DatabaseBusy(acquireTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseBusy(acquireTimeout);
+        }
+    }
+
+    public class ExportPermit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        // Runs the export on the current thread and releases the permit afterwards
+        public void run(Runnable action) {
+            holdsPermit.set(true);
+            try {
+                action.run();
+            } finally {
+                holdsPermit.set(false);
+                release();
+            }
+        }
+
+        // For an export which won't run, releasing twice is a no-op
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                exportPermits.release();
+            }
+        }
+    }
+}
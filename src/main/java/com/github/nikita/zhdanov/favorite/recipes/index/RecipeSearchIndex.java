@@ -0,0 +1,460 @@
+package com.github.nikita.zhdanov.favorite.recipes.index;
+
+import com.github.nikita.zhdanov.favorite.recipes.config.ReadReplicas;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.metrics.SearchMetrics;
+import com.github.nikita.zhdanov.favorite.recipes.model.ContinuationToken;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.repository.IngredientDictionaryRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeSearchEngine;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeSearchRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index answering the searches without the database. Recipes are numbered with int document ids,
+ * every word of the names and instructions and every ingredient name maps to a bitmap of the documents containing it.
+ * The database stays the source of truth: the index is built from it at startup and re-reads every changed recipe.
+ */
+@Slf4j
+@Component
+@Primary
+@ConditionalOnProperty(name = "recipes.search.backend", havingValue = "index")
+public class RecipeSearchIndex implements RecipeSearchEngine {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Up to this number of matches it is cheaper to sort their ids than to walk all the ids in order
+    private static final int SORT_THRESHOLD = 10_000;
+    private static final int RECIPE_LOCK_STRIPES = 64;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private RecipeSearchRepository recipeSearchRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Changes of a recipe are read and applied one at a time, so an older read is never applied after a newer one
+    private final ReentrantLock[] recipeLocks = new ReentrantLock[RECIPE_LOCK_STRIPES];
+    private final TreeMap<String, Integer> documentIds = new TreeMap<>();
+    // Indexed by document id, removed recipes leave null behind: their document ids are not reused
+    private final List<Document> documents = new ArrayList<>();
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final RoaringBitmap vegetarian = new RoaringBitmap();
+    private final TextPostings nameTokens = new TextPostings();
+    private final TextPostings instructionsTokens = new TextPostings();
+    private final Map<String, RoaringBitmap> ingredientNames = new HashMap<>();
+    // Names of the indexed (normalized) ingredient names as they are shown
+    private final Map<String, String> ingredientDisplayNames = new HashMap<>();
+
+    public RecipeSearchIndex() {
+        Arrays.setAll(recipeLocks, stripe -> new ReentrantLock());
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        lock.writeLock().lock();
+        try {
+            documentIds.clear();
+            documents.clear();
+            live.clear();
+            vegetarian.clear();
+            nameTokens.clear();
+            instructionsTokens.clear();
+            ingredientNames.clear();
+            ingredientDisplayNames.clear();
+            // The index is kept current by the changes made on the primary, so it is built from the primary too
+            var primaryRequired = ReadReplicas.requirePrimary(true);
+            try {
+                transactionTemplate.executeWithoutResult(
+                        status -> recipeSearchRepository.scroll(new RecipeFilters(), this::index));
+            } finally {
+                ReadReplicas.requirePrimary(primaryRequired);
+            }
+            log.info("Recipe search index built: {} recipes, {} name, {} instructions and {} ingredient terms",
+                    live.getCardinality(), nameTokens.size(), instructionsTokens.size(), ingredientNames.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        // Every event comes after its commit, so the read of the last one sees at least that change
+        var recipeLock = recipeLocks[Math.floorMod(event.getRecipeId().hashCode(), RECIPE_LOCK_STRIPES)];
+        recipeLock.lock();
+        try {
+            // A replica may not have the change yet
+            var primaryRequired = ReadReplicas.requirePrimary(true);
+            Optional<Recipe> recipe;
+            try {
+                recipe = recipeRepository.findById(event.getRecipeId());
+            } finally {
+                ReadReplicas.requirePrimary(primaryRequired);
+            }
+            lock.writeLock().lock();
+            try {
+                if (recipe.isPresent()) {
+                    index(recipe.get());
+                } else {
+                    remove(event.getRecipeId());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            recipeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> findIds(RecipeFilters filters) {
+        return searchMetrics.time(SearchMetrics.INDEX, filters, () -> findPageIds(filters));
+    }
+
+    @Override
+    public RecipeFacets countFacets(RecipeFilters filters) {
+        lock.readLock().lock();
+        try {
+            var matches = match(filters);
+            var vegetarianCount = RoaringBitmap.andCardinality(matches, vegetarian);
+            var ingredients = ingredientNames.entrySet().stream()
+                    .map(postings -> Map.entry(postings.getKey(),
+                            RoaringBitmap.andCardinality(matches, postings.getValue())))
+                    .filter(count -> count.getValue() > 0)
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(filters.getTopIngredients())
+                    .map(count -> RecipeFacets.IngredientCount.builder()
+                            .name(ingredientDisplayNames.get(count.getKey()))
+                            .recipes(count.getValue())
+                            .build())
+                    .collect(Collectors.toList());
+            return RecipeFacets.builder()
+                    .vegetarian(vegetarianCount)
+                    .nonVegetarian(matches.getCardinality() - vegetarianCount)
+                    .ingredients(ingredients)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<String> findPageIds(RecipeFilters filters) {
+        lock.readLock().lock();
+        try {
+            return page(match(filters), filters);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Must be called under the read lock
+    private RoaringBitmap match(RecipeFilters filters) {
+        var matches = live.clone();
+        applyContainsText(matches, filters.getRecipeName(), nameTokens, Document::getName);
+        applyContainsText(matches, filters.getInstructions(), instructionsTokens, Document::getInstructions);
+        applyExactIngredient(matches, filters.getIngredientName());
+        applyIngredientLists(matches, filters.getIncludeIngredients(), filters.getExcludeIngredients());
+        applyVegetarian(matches, filters.getVegetarian());
+        return matches;
+    }
+
+    private void index(Recipe recipe) {
+        var documentId = documentIds.get(recipe.getId());
+        if (documentId == null) {
+            documentId = documents.size();
+            documents.add(null);
+            documentIds.put(recipe.getId(), documentId);
+        } else {
+            removePostings(documentId);
+        }
+
+        var name = recipe.getName().toLowerCase();
+        var instructions = recipe.getInstructions().toLowerCase();
+        var document = new Document(recipe.getId(), name, instructions, tokenize(name), tokenize(instructions),
+                recipe.getIngredients().stream()
+                        .map(Ingredient::getName)
+                        .map(IngredientDictionaryRepository::normalize)
+                        .collect(Collectors.toSet()),
+                recipe.isVegetarian());
+        documents.set(documentId, document);
+        recipe.getIngredients().forEach(ingredient -> ingredientDisplayNames.put(
+                IngredientDictionaryRepository.normalize(ingredient.getName()), ingredient.getName()));
+
+        nameTokens.add(document.getNameTokens(), documentId);
+        instructionsTokens.add(document.getInstructionsTokens(), documentId);
+        addPostings(ingredientNames, document.getIngredientNames(), documentId);
+        live.add(documentId);
+        if (document.isVegetarian()) {
+            vegetarian.add(documentId);
+        }
+    }
+
+    private void remove(String recipeId) {
+        var documentId = documentIds.remove(recipeId);
+        if (documentId == null) {
+            return;
+        }
+        removePostings(documentId);
+        documents.set(documentId, null);
+    }
+
+    private void removePostings(int documentId) {
+        var document = documents.get(documentId);
+        nameTokens.remove(document.getNameTokens(), documentId);
+        instructionsTokens.remove(document.getInstructionsTokens(), documentId);
+        removePostings(ingredientNames, document.getIngredientNames(), documentId);
+        document.getIngredientNames().stream()
+                .filter(ingredientName -> !ingredientNames.containsKey(ingredientName))
+                .forEach(ingredientDisplayNames::remove);
+        live.remove(documentId);
+        vegetarian.remove(documentId);
+    }
+
+    private static void addPostings(Map<String, RoaringBitmap> postings, Set<String> terms, int documentId) {
+        terms.forEach(term -> postings.computeIfAbsent(term, ignored -> new RoaringBitmap()).add(documentId));
+    }
+
+    private static void removePostings(Map<String, RoaringBitmap> postings, Set<String> terms, int documentId) {
+        for (var term : terms) {
+            var bitmap = postings.get(term);
+            bitmap.remove(documentId);
+            if (bitmap.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private void applyContainsText(RoaringBitmap matches, RecipeFilters.ContainsTextFilter filter,
+                                   TextPostings postings, Function<Document, String> field) {
+        if (filter == null) {
+            return;
+        }
+        var text = filter.getContainsText().toLowerCase();
+        var tokens = List.copyOf(tokenize(text));
+
+        // Every word of the text is a part of some indexed word, the rest is checked against the text itself
+        var containing = matches.clone();
+        for (var token : tokens) {
+            containing.and(postings.containing(token));
+        }
+        var singleWord = tokens.size() == 1 && tokens.get(0).equals(text);
+        if (!singleWord) {
+            var verified = new RoaringBitmap();
+            containing.forEach((int documentId) -> {
+                if (field.apply(documents.get(documentId)).contains(text)) {
+                    verified.add(documentId);
+                }
+            });
+            containing = verified;
+        }
+
+        if (filter.isReverse()) {
+            matches.andNot(containing);
+        } else {
+            matches.and(containing);
+        }
+    }
+
+    private void applyExactIngredient(RoaringBitmap matches, RecipeFilters.ExactTextFilter filter) {
+        if (filter == null) {
+            return;
+        }
+        var withIngredient = ingredientNames.getOrDefault(IngredientDictionaryRepository.normalize(filter.getExactText()), new RoaringBitmap());
+        if (filter.isReverse()) {
+            matches.andNot(withIngredient);
+        } else {
+            matches.and(withIngredient);
+        }
+    }
+
+    private void applyIngredientLists(RoaringBitmap matches, List<String> includeNames, List<String> excludeNames) {
+        if (includeNames != null) {
+            for (var name : includeNames) {
+                matches.and(ingredientNames.getOrDefault(IngredientDictionaryRepository.normalize(name), new RoaringBitmap()));
+            }
+        }
+        if (excludeNames != null) {
+            for (var name : excludeNames) {
+                var withIngredient = ingredientNames.get(IngredientDictionaryRepository.normalize(name));
+                if (withIngredient != null) {
+                    matches.andNot(withIngredient);
+                }
+            }
+        }
+    }
+
+    private void applyVegetarian(RoaringBitmap matches, Boolean isVegetarian) {
+        if (isVegetarian == null) {
+            return;
+        }
+        if (isVegetarian) {
+            matches.and(vegetarian);
+        } else {
+            matches.andNot(vegetarian);
+        }
+    }
+
+    private List<String> page(RoaringBitmap matches, RecipeFilters filters) {
+        var lastRecipeId = filters.getContinuationToken() == null ? null : ContinuationToken.decode(filters);
+        var skip = lastRecipeId == null ? (long) filters.getPageNumber() * filters.getPageSize() : 0;
+
+        if (matches.getCardinality() <= SORT_THRESHOLD) {
+            var ids = new ArrayList<String>(matches.getCardinality());
+            matches.forEach((int documentId) -> ids.add(documents.get(documentId).getId()));
+            return ids.stream()
+                    .filter(id -> lastRecipeId == null || id.compareTo(lastRecipeId) > 0)
+                    .sorted()
+                    .skip(skip)
+                    .limit(filters.getPageSize())
+                    .collect(Collectors.toList());
+        }
+
+        var ids = new ArrayList<String>(filters.getPageSize());
+        var candidates = lastRecipeId == null ? documentIds : documentIds.tailMap(lastRecipeId, false);
+        for (var candidate : candidates.entrySet()) {
+            if (!matches.contains(candidate.getValue())) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            ids.add(candidate.getKey());
+            if (ids.size() == filters.getPageSize()) {
+                break;
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> tokenize(String text) {
+        return Arrays.stream(TOKEN_SEPARATOR.split(text))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Postings of the words of a text field. The words are also listed by their trigrams, so the words containing
+     * a part of at least three characters are found from its rarest trigram instead of by checking every word.
+     * Shorter parts still check every word.
+     */
+    private static class TextPostings {
+        private static final int GRAM_LENGTH = 3;
+
+        private final Map<String, RoaringBitmap> postings = new HashMap<>();
+        private final Map<String, Set<String>> termsByGram = new HashMap<>();
+
+        void add(Set<String> terms, int documentId) {
+            for (var term : terms) {
+                postings.computeIfAbsent(term, newTerm -> {
+                    grams(newTerm).forEach(gram -> termsByGram.computeIfAbsent(gram, ignored -> new HashSet<>()).add(newTerm));
+                    return new RoaringBitmap();
+                }).add(documentId);
+            }
+        }
+
+        void remove(Set<String> terms, int documentId) {
+            for (var term : terms) {
+                var bitmap = postings.get(term);
+                bitmap.remove(documentId);
+                if (bitmap.isEmpty()) {
+                    postings.remove(term);
+                    for (var gram : grams(term)) {
+                        var gramTerms = termsByGram.get(gram);
+                        gramTerms.remove(term);
+                        if (gramTerms.isEmpty()) {
+                            termsByGram.remove(gram);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Documents with a word containing the part
+        RoaringBitmap containing(String part) {
+            var documentIds = new RoaringBitmap();
+            Collection<String> candidates = postings.keySet();
+            for (var gram : grams(part)) {
+                var gramTerms = termsByGram.get(gram);
+                if (gramTerms == null) {
+                    return documentIds;
+                }
+                if (gramTerms.size() < candidates.size()) {
+                    candidates = gramTerms;
+                }
+            }
+            for (var term : candidates) {
+                if (term.contains(part)) {
+                    documentIds.or(postings.get(term));
+                }
+            }
+            return documentIds;
+        }
+
+        int size() {
+            return postings.size();
+        }
+
+        void clear() {
+            postings.clear();
+            termsByGram.clear();
+        }
+
+        private static Set<String> grams(String term) {
+            var grams = new HashSet<String>();
+            for (var index = 0; index + GRAM_LENGTH <= term.length(); index++) {
+                grams.add(term.substring(index, index + GRAM_LENGTH));
+            }
+            return grams;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Document {
+        private final String id;
+        private final String name;
+        private final String instructions;
+        private final Set<String> nameTokens;
+        private final Set<String> instructionsTokens;
+        private final Set<String> ingredientNames;
+        private final boolean vegetarian;
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.nikita.zhdanov.favorite.recipes.metrics;
+
+import com.github.nikita.zhdanov.favorite.recipes.error.InvalidContinuationToken;
+import com.github.nikita.zhdanov.favorite.recipes.model.CanonicalFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Search metrics tagged by the filters present in the search, so slow filter combinations can be told apart.
+ * The time is measured on every layer (controller, service, repository or index), the rest once per search request.
+ * Failed searches are measured too, tagged by their outcome like the HTTP server requests.
+ */
+@Slf4j
+@Component
+public class SearchMetrics {
+    public static final String CONTROLLER = "controller";
+    public static final String SERVICE = "service";
+    public static final String REPOSITORY = "repository";
+    public static final String INDEX = "index";
+    public static final String SUCCESS = "SUCCESS";
+    public static final String CLIENT_ERROR = "CLIENT_ERROR";
+    public static final String SERVER_ERROR = "SERVER_ERROR";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Value("${recipes.metrics.slow-search-threshold:500ms}")
+    private Duration slowSearchThreshold;
+
+    public <T> T time(String layer, RecipeFilters filters, Supplier<T> search) {
+        var sample = Timer.start(meterRegistry);
+        var outcome = SERVER_ERROR;
+        try {
+            var result = search.get();
+            outcome = SUCCESS;
+            return result;
+        } catch (InvalidContinuationToken e) {
+            outcome = CLIENT_ERROR;
+            throw e;
+        } finally {
+            sample.stop(timer(layer, tags(filters, outcome)));
+        }
+    }
+
+    public Request start() {
+        return new Request(Timer.start(meterRegistry), sqlStatementCounter.current());
+    }
+
+    public void stop(Request request, RecipeFilters filters, int rows, String outcome) {
+        var tags = tags(filters, outcome);
+        var nanos = request.sample.stop(timer(CONTROLLER, tags));
+        summary("recipes.search.rows", "Recipes returned by a search", tags).record(rows);
+        summary("recipes.search.page.depth", "Page number of searches paged by number", tags)
+                .record(filters.getContinuationToken() == null ? filters.getPageNumber() : 0);
+        summary("recipes.search.statements", "SQL statements run by a search request", tags)
+                .record(sqlStatementCounter.current() - request.statements);
+
+        if (nanos > slowSearchThreshold.toNanos()) {
+            log.warn("Slow search: {} ms, {} recipes, outcome {}, filters {}",
+                    TimeUnit.NANOSECONDS.toMillis(nanos), rows, outcome, CanonicalFilters.page(filters));
+        }
+    }
+
+    private Timer timer(String layer, Tags tags) {
+        return Timer.builder("recipes.search")
+                .description("Time of the searches")
+                .tags(tags)
+                .tag("layer", layer)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary summary(String name, String description, Tags tags) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Tags tags(RecipeFilters filters, String outcome) {
+        var excludesIngredients = filters.getExcludeIngredients() != null && !filters.getExcludeIngredients().isEmpty();
+        var reverse = excludesIngredients ||
+                Stream.of(filters.getRecipeName(), filters.getInstructions(), filters.getIngredientName())
+                        .anyMatch(filter -> filter != null && filter.isReverse());
+        var ingredient = filters.getIngredientName() != null || excludesIngredients ||
+                (filters.getIncludeIngredients() != null && !filters.getIncludeIngredients().isEmpty());
+        return Tags.of(
+                "name", String.valueOf(filters.getRecipeName() != null),
+                "instructions", String.valueOf(filters.getInstructions() != null),
+                "ingredient", String.valueOf(ingredient),
+                "vegetarian", String.valueOf(filters.getVegetarian() != null),
+                "reverse", String.valueOf(reverse),
+                "outcome", outcome);
+    }
+
+    @AllArgsConstructor
+    public static class Request {
+        private final Timer.Sample sample;
+        private final long statements;
+    }
+}
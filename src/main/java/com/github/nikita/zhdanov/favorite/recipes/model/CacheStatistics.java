@@ -0,0 +1,40 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("Cache statistics")
+public class CacheStatistics {
+    @ApiModelProperty(value = "Approximate number of cached entries")
+    private long size;
+    @ApiModelProperty(value = "Number of lookups which found a cached entry")
+    private long hits;
+    @ApiModelProperty(value = "Number of lookups which had to load the entry")
+    private long misses;
+    @ApiModelProperty(value = "Ratio of the lookups which found a cached entry")
+    private double hitRate;
+    @ApiModelProperty(value = "Number of entries evicted because of the size or expiration limits")
+    private long evictions;
+
+    public static CacheStatistics of(Cache<?, ?> cache) {
+        var stats = cache.stats();
+        return CacheStatistics.builder()
+                .size(cache.estimatedSize())
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictions(stats.evictionCount())
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Normalized textual form of {@link RecipeFilters}: filters which select the same recipes have the same form, and
+ * different filters never do. The separators in the values are escaped, so a value can't pass for another filter.
+ */
+public final class CanonicalFilters {
+    private static final Pattern ESCAPED = Pattern.compile("[\\\\|,!]");
+
+    private CanonicalFilters() {
+    }
+
+    // Filter criteria only, without pagination
+    public static String criteria(RecipeFilters filters) {
+        return new StringBuilder()
+                .append("name=").append(containsText(filters.getRecipeName()))
+                .append("|instructions=").append(containsText(filters.getInstructions()))
+                .append("|ingredient=").append(exactText(filters.getIngredientName()))
+                .append("|include=").append(ingredients(filters.getIncludeIngredients()))
+                .append("|exclude=").append(ingredients(filters.getExcludeIngredients()))
+                .append("|vegetarian=").append(filters.getVegetarian() == null ? "" : filters.getVegetarian())
+                .toString();
+    }
+
+    // Filter criteria and pagination, the page number is irrelevant when the continuation token is set
+    public static String page(RecipeFilters filters) {
+        var page = filters.getContinuationToken() == null
+                ? "|page=" + filters.getPageNumber()
+                : "|after=" + escape(filters.getContinuationToken());
+        return criteria(filters) + "|size=" + filters.getPageSize() + page;
+    }
+
+    private static String containsText(RecipeFilters.ContainsTextFilter filter) {
+        return filter == null ? "" : (filter.isReverse() ? "!" : "") + escape(filter.getContainsText().toLowerCase());
+    }
+
+    private static String exactText(RecipeFilters.ExactTextFilter filter) {
+        return filter == null ? "" : (filter.isReverse() ? "!" : "") + escape(filter.getExactText().toLowerCase());
+    }
+
+    // Order and repetitions of the names don't change the result
+    private static String ingredients(List<String> names) {
+        if (names == null) {
+            return "";
+        }
+        return names.stream()
+                .map(name -> escape(name.trim().toLowerCase(Locale.ROOT)))
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    // The field separator "|", the list separator "," and the reverse mark "!" only appear unescaped as such
+    private static String escape(String value) {
+        return ESCAPED.matcher(value).replaceAll("\\\\$0");
+    }
+}
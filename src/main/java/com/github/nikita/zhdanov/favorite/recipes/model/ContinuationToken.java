@@ -0,0 +1,50 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.github.nikita.zhdanov.favorite.recipes.error.InvalidContinuationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset pagination cursor: the id of the last recipe of the page plus a hash of the filters it was issued for.
+ */
+public final class ContinuationToken {
+    private static final char SEPARATOR = ':';
+
+    private ContinuationToken() {
+    }
+
+    public static String encode(RecipeFilters filters, String lastRecipeId) {
+        var token = filtersHash(filters) + SEPARATOR + lastRecipeId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(RecipeFilters filters) {
+        var token = filters.getContinuationToken();
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidContinuationToken(token);
+        }
+        var separatorIndex = decoded.indexOf(SEPARATOR);
+        if (separatorIndex < 0
+                || !decoded.substring(0, separatorIndex).equals(filtersHash(filters))
+                || !Uuids.isUuid(decoded.substring(separatorIndex + 1))) {
+            throw new InvalidContinuationToken(token);
+        }
+        return decoded.substring(separatorIndex + 1);
+    }
+
+    private static String filtersHash(RecipeFilters filters) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256")
+                    .digest(CanonicalFilters.criteria(filters).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
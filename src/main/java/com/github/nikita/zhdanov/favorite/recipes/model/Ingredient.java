@@ -1,32 +1,49 @@
 package com.github.nikita.zhdanov.favorite.recipes.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.nikita.zhdanov.favorite.recipes.config.UuidBinaryType;
+import com.github.nikita.zhdanov.favorite.recipes.repository.IngredientDictionaryListener;
 import io.swagger.annotations.ApiParam;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Type;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
 import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
-import java.util.UUID;
 
+/**
+ * Ingredient of a recipe: a link between the recipe and an entry of the shared ingredient dictionary.
+ * The link keeps the name as the recipe gives it, the dictionary id of the normalized name and the amount.
+ */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "ingredients")
+@Table(name = "recipe_ingredients")
+@EntityListeners(IngredientDictionaryListener.class)
 public class Ingredient {
     @Id
+    @Type(type = UuidBinaryType.NAME)
+    @Pattern(regexp = Uuids.REGEXP, message = "Id must be a UUID")
     @ApiParam(value = "Unique identifier of the ingredient", example = "12345678-1234-1234-1234-1234567890ab")
     private String id;
 
+    // On save the name is resolved to the dictionary id
     @NotBlank(message = "Name is required")
     @Size(min = 1, max = 255, message = "Name must be between 1 and 255 characters")
     @ApiParam(value = "Name of the ingredient", example = "Tomatoes", required = true)
@@ -35,10 +52,29 @@ public class Ingredient {
     @ApiParam(value = "Amount of the ingredient in grams", example = "100")
     private int amount;
 
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Column(name = "ingredient_id")
+    private Long dictionaryId;
+
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Type(type = UuidBinaryType.NAME)
+    @Column(name = "recipe_id", insertable = false, updatable = false)
+    private String recipeId;
+
     @PrePersist
     private void ensureId(){
         if (id == null){
-            id = UUID.randomUUID().toString();
+            id = Uuids.newTimeOrdered();
         }
+        trimName();
+    }
+
+    @PreUpdate
+    private void trimName() {
+        name = name.trim();
     }
 }
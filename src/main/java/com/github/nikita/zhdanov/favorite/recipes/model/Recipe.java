@@ -1,19 +1,26 @@
 package com.github.nikita.zhdanov.favorite.recipes.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.nikita.zhdanov.favorite.recipes.config.UuidBinaryType;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeIngredientTermsListener;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
-import java.util.Collection;
-import java.util.UUID;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
@@ -22,9 +29,14 @@ import java.util.UUID;
 @AllArgsConstructor
 @Entity
 @Table(name = "recipes")
+@EntityListeners(RecipeIngredientTermsListener.class)
 @ApiModel("Recipe")
 public class Recipe {
+    private static final AtomicLong LAST_INITIAL_VERSION = new AtomicLong();
+
     @Id
+    @Type(type = UuidBinaryType.NAME)
+    @Pattern(regexp = Uuids.REGEXP, message = "Id must be a UUID")
     @ApiModelProperty(value = "Unique identifier of the recipe", example = "12345678-1234-1234-1234-1234567890ab")
     private String id;
 
@@ -39,19 +51,49 @@ public class Recipe {
             required = true)
     private String instructions;
 
-    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
+    @JoinColumn(name = "recipe_id", nullable = false)
+    @OrderColumn(name = "position")
     @NotEmpty(message = "Ingredients are required")
     @ApiModelProperty(value = "Ingredients for the recipe", required = true,
             example = "[{\"name\":\"Tomatoes\",\"amount\":100},{\"name\":\"Mozzarella\",\"amount\":100}]")
-    private Collection<Ingredient> ingredients;
+    private List<Ingredient> ingredients;
 
     @ApiModelProperty(value = "Is the dish vegetarian?", example = "true")
     private boolean vegetarian;
 
+    // See RecipeContentHash, null until the recipe is saved through the service
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Column(name = "content_hash")
+    private byte[] contentHash;
+
+    // See RecipeIngredientTerms, kept current by RecipeIngredientTermsListener
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Column(name = "ingredient_terms")
+    private String ingredientTerms;
+
+    // Returned as the ETag of the recipe
+    @Version
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Long version;
+
+    // Versions of a recipe created through the services start from the creation time in microseconds, so a recipe
+    // which is deleted and created again doesn't repeat the versions (and the ETags) of the deleted one. The versions
+    // stay below 2^53, so they are exact as JSON numbers as well.
+    public static long initialVersion() {
+        return LAST_INITIAL_VERSION.updateAndGet(last -> Math.max(System.currentTimeMillis() * 1000, last + 1000));
+    }
+
     @PrePersist
     private void ensureId(){
         if (id == null){
-            id = UUID.randomUUID().toString();
+            id = Uuids.newTimeOrdered();
         }
     }
 }
@@ -0,0 +1,56 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.github.nikita.zhdanov.favorite.recipes.cache.CachedRecipeSerializer;
+import com.github.nikita.zhdanov.favorite.recipes.error.RecipeNotExists;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("Recipes requested by id")
+public class RecipeBatchResponse {
+    @ApiModelProperty(value = "One item per requested id, in the order of the request")
+    private List<Item> recipes;
+
+    // Recipes by the requested ids, the ids without one are marked as not found
+    public static RecipeBatchResponse of(List<String> ids, Map<String, Recipe> recipesByRequestedId) {
+        var items = ids.stream()
+                .map(id -> {
+                    var recipe = recipesByRequestedId.get(id);
+                    return recipe == null
+                            ? Item.builder().id(id).error(new RecipeNotExists(id).getMessage()).build()
+                            : Item.builder().id(id).recipe(recipe).build();
+                })
+                .collect(Collectors.toList());
+        return RecipeBatchResponse.builder().recipes(items).build();
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        @ApiModelProperty(value = "Requested id", example = "12345678-1234-1234-1234-1234567890ab")
+        private String id;
+        @ApiModelProperty(value = "Recipe, missing if it was not found")
+        @JsonSerialize(using = CachedRecipeSerializer.class)
+        private Recipe recipe;
+        @ApiModelProperty(value = "Reason why the recipe is missing",
+                example = "Recipe with id 12345678-1234-1234-1234-1234567890ab not found")
+        private String error;
+    }
+}
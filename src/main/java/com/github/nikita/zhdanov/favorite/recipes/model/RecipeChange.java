@@ -0,0 +1,35 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("Change of a recipe")
+public class RecipeChange {
+    @ApiModelProperty(value = "Position of the change in the feed, changes are numbered in the order they were committed",
+            example = "42")
+    private long sequence;
+    @ApiModelProperty(value = "Id of the changed recipe", example = "12345678-1234-1234-1234-1234567890ab")
+    private String recipeId;
+    @ApiModelProperty(value = "UPSERT if the recipe was added or updated, DELETE if it was removed", example = "UPSERT")
+    private Operation operation;
+    @ApiModelProperty(value = "Version of the recipe after the change, empty for a removal", example = "3")
+    private Long version;
+    @ApiModelProperty(value = "Time of the change")
+    private Instant changedAt;
+
+    public enum Operation {
+        UPSERT, DELETE
+    }
+}
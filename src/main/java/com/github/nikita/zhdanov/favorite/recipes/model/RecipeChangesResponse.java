@@ -0,0 +1,23 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("Changes of the recipes after a sequence number")
+public class RecipeChangesResponse {
+    @ApiModelProperty(value = "Changes in the order of their sequence numbers")
+    private List<RecipeChange> changes;
+    @ApiModelProperty(value = "Sequence number to ask for the next changes after: the one of the last change, or the " +
+            "requested one if there were no changes", example = "42")
+    private long lastSequence;
+}
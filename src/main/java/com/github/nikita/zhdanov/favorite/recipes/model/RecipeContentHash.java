@@ -0,0 +1,39 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of what a client can change in a recipe: name, instructions, vegetarian flag and the ingredients in order.
+ * Ingredient names are hashed trimmed, as they are stored, so a change of the spelling is a change of the recipe.
+ */
+public final class RecipeContentHash {
+    private RecipeContentHash() {
+    }
+
+    public static byte[] of(Recipe recipe) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, recipe.getName());
+        update(digest, recipe.getInstructions());
+        digest.update((byte) (recipe.isVegetarian() ? 1 : 0));
+        for (var ingredient : recipe.getIngredients()) {
+            update(digest, ingredient.getName().trim());
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(ingredient.getAmount()).array());
+        }
+        return digest.digest();
+    }
+
+    // Length-prefixed, so moving characters between neighbouring values changes the hash
+    private static void update(MessageDigest digest, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("Counts of all the recipes matching the filters, regardless of the page")
+public class RecipeFacets {
+    @ApiModelProperty(value = "Number of vegetarian recipes", example = "12")
+    private long vegetarian;
+    @ApiModelProperty(value = "Number of non-vegetarian recipes", example = "30")
+    private long nonVegetarian;
+    @ApiModelProperty(value = "Most common ingredients, by the number of recipes containing them")
+    private List<IngredientCount> ingredients;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IngredientCount {
+        @ApiModelProperty(value = "Name of the ingredient", example = "Tomatoes")
+        private String name;
+        @ApiModelProperty(value = "Number of recipes containing the ingredient", example = "7")
+        private long recipes;
+    }
+}
@@ -9,6 +9,8 @@ import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.util.List;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
@@ -29,6 +31,16 @@ public class RecipeFilters {
     @Valid
     private ExactTextFilter ingredientName;
 
+    @ApiModelProperty(value = "Recipe has all of these ingredients (case-insensitive). Max = 100 names",
+            example = "[\"Tomatoes\", \"Basil\"]")
+    @Size(max = 100, message = "Max number of includeIngredients is 100")
+    private List<@NotBlank(message = "Ingredient name must not be blank") String> includeIngredients;
+
+    @ApiModelProperty(value = "Recipe has none of these ingredients (case-insensitive). Max = 100 names",
+            example = "[\"Nuts\"]")
+    @Size(max = 100, message = "Max number of excludeIngredients is 100")
+    private List<@NotBlank(message = "Ingredient name must not be blank") String> excludeIngredients;
+
     @ApiModelProperty(value = "Recipe is vegetarian", example = "true")
     private Boolean vegetarian;
 
@@ -41,6 +53,22 @@ public class RecipeFilters {
     @Min(value = 1, message = "Min value for pageSize is 1")
     private Integer pageSize;
 
+    @ApiModelProperty(value = "Pagination: continuation token returned with the previous page. If set, the search " +
+            "continues right after the previous page and the page number is ignored. The filters must be the same " +
+            "as in the search which returned the token")
+    private String continuationToken;
+
+    @ApiModelProperty(value = "Also count all the matching recipes: the total number, vegetarian and " +
+            "non-vegetarian ones and the most common ingredients. Costs aggregate queries, so it is off by default",
+            example = "false")
+    private boolean includeCounts;
+
+    @ApiModelProperty(value = "Number of the most common ingredients counted if includeCounts is set. Max = 100, " +
+            "default = 10", example = "10")
+    @Max(value = 100, message = "Max value for topIngredients is 100")
+    @Min(value = 0, message = "Min value for topIngredients is 0")
+    private Integer topIngredients;
+
     @JsonInclude(JsonInclude.Include.NON_NULL)
     @EqualsAndHashCode(callSuper = true)
     @Data
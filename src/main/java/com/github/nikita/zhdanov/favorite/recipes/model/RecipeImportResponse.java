@@ -0,0 +1,44 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("Result of the recipe import")
+public class RecipeImportResponse {
+    @ApiModelProperty(value = "Number of recipes added or updated")
+    private int imported;
+    @ApiModelProperty(value = "Number of recipes which were not imported")
+    private int failed;
+    @ApiModelProperty(value = "Reasons why recipes were not imported")
+    private List<ItemError> errors;
+    @ApiModelProperty(value = "Duration of the import in milliseconds")
+    private long elapsedMillis;
+    @ApiModelProperty(value = "Import throughput: recipes imported per second")
+    private double recipesPerSecond;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemError {
+        @ApiModelProperty(value = "Position of the recipe in the request, starting from 0", example = "0")
+        private int index;
+        @ApiModelProperty(value = "Id of the recipe if it could be read", example = "12345678-1234-1234-1234-1234567890ab")
+        private String id;
+        @ApiModelProperty(value = "Reason of the failure", example = "Name is required")
+        private String message;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Ingredients of a recipe as words of the FULLTEXT-indexed column recipes.ingredient_terms, so an ingredient filter is
+ * answered by the recipes table alone. There is one word per distinct dictionary id: "ing" followed by the id, which is
+ * long enough to be indexed and is never a stopword. The same format is produced by the 1.5.0 changelog backfill.
+ */
+public final class RecipeIngredientTerms {
+    private RecipeIngredientTerms() {
+    }
+
+    public static String of(Collection<Long> dictionaryIds) {
+        return dictionaryIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(RecipeIngredientTerms::term)
+                .collect(Collectors.joining(" "));
+    }
+
+    public static String term(long dictionaryId) {
+        return "ing" + dictionaryId;
+    }
+}
@@ -1,6 +1,8 @@
 package com.github.nikita.zhdanov.favorite.recipes.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.github.nikita.zhdanov.favorite.recipes.cache.CachedRecipeSerializer;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
@@ -18,6 +20,7 @@ import java.util.Collection;
 @ApiModel("Result of the recipe search")
 public class RecipeSearchResponse {
     @ApiModelProperty(value = "Found recipes")
+    @JsonSerialize(contentUsing = CachedRecipeSerializer.class)
     private Collection<Recipe> recipes;
     @ApiModelProperty(value = "Pagination information: the page size used for the search." +
             "If the currentNumberOfRecipes contains exactly this number of recipes, need to make another search with the next page number.")
@@ -27,4 +30,11 @@ public class RecipeSearchResponse {
     @ApiModelProperty(value = "Pagination information: current number of recipes found." +
             "If this number is equal to the page size, need to make another search with the next page number.")
     private int currentNumberOfRecipes;
+    @ApiModelProperty(value = "Pagination information: token to fetch the next page with the same filters. " +
+            "Present only if the current page is full.")
+    private String continuationToken;
+    @ApiModelProperty(value = "Number of all the recipes matching the filters. Present only if includeCounts is set.")
+    private Long totalNumberOfRecipes;
+    @ApiModelProperty(value = "Counts of the recipes matching the filters. Present only if includeCounts is set.")
+    private RecipeFacets facets;
 }
@@ -0,0 +1,85 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.github.nikita.zhdanov.favorite.recipes.error.InvalidRecipeId;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Ids of recipes and ingredients: UUIDs in the canonical textual form, stored as BINARY(16).
+ * Generated ids are time-ordered (UUID version 7), so new rows are appended to the end of the primary key index.
+ * <p>
+ * Before ids became UUIDs any string of up to 36 characters was an id. Changelog 1.2.0 replaced such a legacy id by
+ * unhex(md5(id)) and kept it in recipe_legacy_ids, so lookups by a legacy id keep finding its recipe. Recipes are only
+ * saved under UUIDs.
+ */
+public final class Uuids {
+    public static final String REGEXP =
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}";
+    private static final Pattern PATTERN = Pattern.compile(REGEXP);
+    private static final int LEGACY_MAX_LENGTH = 36;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private Uuids() {
+    }
+
+    // 48 bits of Unix time in milliseconds, the version, 74 random bits and the variant
+    public static String newTimeOrdered() {
+        var random = new byte[10];
+        RANDOM.nextBytes(random);
+        var randomBits = ByteBuffer.wrap(random);
+        var mostSignificantBits = System.currentTimeMillis() << 16 | 0x7000 | randomBits.getShort() & 0x0fff;
+        var leastSignificantBits = randomBits.getLong() & 0x3fffffffffffffffL | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    public static boolean isUuid(String id) {
+        return id != null && PATTERN.matcher(id).matches();
+    }
+
+    // An id which is not a UUID and which recipes had before changelog 1.2.0
+    public static boolean isLegacy(String id) {
+        return !isUuid(id) && id != null && !id.isBlank() && id.length() <= LEGACY_MAX_LENGTH;
+    }
+
+    public static String canonical(String id) {
+        if (!isUuid(id)) {
+            throw new InvalidRecipeId(id);
+        }
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    // UUID changelog 1.2.0 gave the recipe of the legacy id, for a legacy id spelled like it was stored. Databases
+    // converted before recipe_legacy_ids existed only have this mapping.
+    public static String fromLegacy(String legacyId) {
+        return fromBytes(md5(legacyId));
+    }
+
+    public static byte[] toBytes(String id) {
+        var uuid = UUID.fromString(canonical(id));
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    // MariaDB hashed the stored characters, which are the same in UTF-8 for the ASCII ids clients used
+    private static byte[] md5(String legacyId) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(legacyId.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String fromBytes(byte[] bytes) {
+        var buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("Write-behind queue status")
+public class WriteBehindStatus {
+    @ApiModelProperty(value = "Number of accepted saves which are not written to the database yet")
+    private int queueDepth;
+    @ApiModelProperty(value = "Number of saves the queue accepts before it answers 503")
+    private int queueCapacity;
+    @ApiModelProperty(value = "Age of the oldest save which is not written to the database yet, in milliseconds")
+    private long lagMillis;
+    @ApiModelProperty(value = "Number of saves written to the database since the start")
+    private long written;
+    @ApiModelProperty(value = "Number of accepted saves the database rejected since the start")
+    private long failed;
+    @ApiModelProperty(value = "Size of the journal segments on disk, which hold the saves which are not written yet, in bytes")
+    private long journalBytes;
+}
@@ -0,0 +1,5 @@
+@TypeDef(name = UuidBinaryType.NAME, typeClass = UuidBinaryType.class)
+package com.github.nikita.zhdanov.favorite.recipes.model;
+
+import com.github.nikita.zhdanov.favorite.recipes.config.UuidBinaryType;
+import org.hibernate.annotations.TypeDef;
@@ -0,0 +1,49 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Turns the text of a "contains" filter into a MariaDB MATCH ... AGAINST query, shared by the JPA and R2DBC searches.
+ */
+@Component
+public class FullTextQueryBuilder {
+    // Default InnoDB full-text stopwords: they are not indexed, so they can't be required in a boolean mode search
+    private static final Set<String> FULL_TEXT_STOPWORDS = Set.of("a", "about", "an", "are", "as", "at", "be", "by",
+            "com", "de", "en", "for", "from", "how", "i", "in", "is", "it", "la", "of", "on", "or", "that", "the",
+            "this", "to", "was", "what", "when", "where", "who", "will", "with", "und", "www");
+
+    @Value("${recipes.search.full-text.enabled:false}")
+    private boolean enabled;
+    @Value("${recipes.search.full-text.boolean-mode:true}")
+    private boolean booleanMode;
+    @Value("${recipes.search.full-text.min-token-length:3}")
+    private int minTokenLength;
+
+    public boolean isBooleanMode() {
+        return booleanMode;
+    }
+
+    // Returns null if the text can't be searched through the full-text index and LIKE should be used instead
+    public String toFullTextQuery(String text) {
+        if (!enabled) {
+            return null;
+        }
+        var tokens = Arrays.stream(text.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toList());
+        var indexed = !tokens.isEmpty() && tokens.stream()
+                .allMatch(token -> token.length() >= minTokenLength && !FULL_TEXT_STOPWORDS.contains(token));
+        if (!indexed) {
+            return null;
+        }
+        if (!booleanMode) {
+            return String.join(" ", tokens);
+        }
+        return tokens.stream().map(token -> "+" + token + "*").collect(Collectors.joining(" "));
+    }
+}
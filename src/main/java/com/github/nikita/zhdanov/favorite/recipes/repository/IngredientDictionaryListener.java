@@ -0,0 +1,25 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import java.util.List;
+
+/**
+ * Resolves the dictionary id of an ingredient saved without one, e.g. through the repositories directly.
+ * The services resolve all the ingredients of a save at once beforehand.
+ */
+public class IngredientDictionaryListener {
+    @Autowired
+    private IngredientDictionaryRepository ingredientDictionaryRepository;
+
+    @PrePersist
+    @PreUpdate
+    public void resolveDictionaryId(Ingredient ingredient) {
+        if (ingredient.getDictionaryId() == null) {
+            ingredientDictionaryRepository.resolve(List.of(ingredient));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Shared dictionary of ingredient names. Every distinct (case and accent insensitive) name gets a numeric id once,
+ * recipes reference it instead of repeating the name. Entries are never changed or removed, so the ids
+ * are kept in memory after their transaction commits.
+ */
+@Repository
+public class IngredientDictionaryRepository {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Map<String, Long> committedIds = new ConcurrentHashMap<>();
+
+    // Names equal by the accent and case insensitive collation of normalized_name (e.g. "Crème" and "creme")
+    // are normalized to the same value
+    public static String normalize(String name) {
+        return COMBINING_MARKS.matcher(Normalizer.normalize(name.trim(), Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    // Looks up the id of an ingredient name without adding it to the dictionary
+    public Optional<Long> find(String name) {
+        var normalizedName = normalize(name);
+        var id = committedIds.get(normalizedName);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        var found = selectOne(normalizedName);
+        found.ifPresent(foundId -> remember(normalizedName, foundId));
+        return found;
+    }
+
+    // Ids by normalized name of the given names which are in the dictionary, looked up together
+    public Map<String, Long> findAll(Collection<String> names) {
+        var ids = new HashMap<String, Long>();
+        var missingNames = new HashSet<String>();
+        for (var name : names) {
+            var normalizedName = normalize(name);
+            var id = committedIds.get(normalizedName);
+            if (id != null) {
+                ids.put(normalizedName, id);
+            } else {
+                missingNames.add(normalizedName);
+            }
+        }
+        if (!missingNames.isEmpty()) {
+            // The names it doesn't return are not in the dictionary
+            var found = select(missingNames);
+            found.forEach(this::remember);
+            ids.putAll(found);
+        }
+        return ids;
+    }
+
+    // Names of the dictionary entries by id
+    public Map<Long, String> findNames(Collection<Long> ids) {
+        var names = new HashMap<Long, String>();
+        if (ids.isEmpty()) {
+            return names;
+        }
+        jdbcTemplate.query("select id, name from ingredient_dictionary where id in (:ids)", Map.of("ids", ids),
+                resultSet -> {
+                    names.put(resultSet.getLong("id"), resultSet.getString("name"));
+                });
+        return names;
+    }
+
+    // Sets the dictionary ids of the ingredients, adding the names which are not in the dictionary yet
+    public void resolve(Collection<Ingredient> ingredients) {
+        // Sorted, so concurrent transactions insert the same names in the same order and don't deadlock
+        var missingNames = new TreeMap<String, String>();
+        ingredients.forEach(ingredient ->
+                missingNames.putIfAbsent(normalize(ingredient.getName()), ingredient.getName().trim()));
+        var ids = new HashMap<String, Long>();
+        missingNames.keySet().removeIf(normalizedName -> {
+            var id = committedIds.get(normalizedName);
+            if (id != null) {
+                ids.put(normalizedName, id);
+            }
+            return id != null;
+        });
+
+        if (!missingNames.isEmpty()) {
+            var found = select(missingNames.keySet());
+            missingNames.keySet().removeAll(found.keySet());
+            if (!missingNames.isEmpty()) {
+                jdbcTemplate.batchUpdate("insert ignore into ingredient_dictionary (name, normalized_name) " +
+                                "values (:name, :normalizedName)",
+                        missingNames.entrySet().stream()
+                                .map(entry -> new MapSqlParameterSource()
+                                        .addValue("name", entry.getValue())
+                                        .addValue("normalizedName", entry.getKey()))
+                                .toArray(MapSqlParameterSource[]::new));
+                found.putAll(select(missingNames.keySet()));
+            }
+            found.forEach(this::remember);
+            ids.putAll(found);
+        }
+        ingredients.forEach(ingredient -> ingredient.setDictionaryId(ids.get(normalize(ingredient.getName()))));
+    }
+
+    // Ids by the given names, in one query. A name equal to an entry by the column collation but not by normalize()
+    // (e.g. "strasse" and "straße") is returned under the given name, not under the one of the entry.
+    private Map<String, Long> select(Collection<String> normalizedNames) {
+        var parameters = new MapSqlParameterSource();
+        var query = new StringJoiner(" union all ");
+        for (var normalizedName : normalizedNames) {
+            var parameter = "normalizedName" + parameters.getValues().size();
+            parameters.addValue(parameter, normalizedName);
+            query.add("select :" + parameter + " as requested_name, id from ingredient_dictionary " +
+                    "where normalized_name = :" + parameter);
+        }
+        var ids = new HashMap<String, Long>();
+        jdbcTemplate.query(query.toString(), parameters, resultSet -> {
+            ids.put(resultSet.getString("requested_name"), resultSet.getLong("id"));
+        });
+        return ids;
+    }
+
+    private Optional<Long> selectOne(String normalizedName) {
+        return jdbcTemplate.queryForList("select id from ingredient_dictionary where normalized_name = :normalizedName",
+                Map.of("normalizedName", normalizedName), Long.class).stream().findFirst();
+    }
+
+    // An entry added by a transaction which is rolled back later doesn't exist, so it is remembered only after commit
+    private void remember(String normalizedName, Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committedIds.put(normalizedName, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committedIds.put(normalizedName, id);
+            }
+        });
+    }
+}
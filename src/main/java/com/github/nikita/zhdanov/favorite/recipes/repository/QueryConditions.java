@@ -0,0 +1,39 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where clause of a search query (SQL or JPQL) with its values bound as named parameters p0, p1, ... in the order the
+ * causes are added. The query text depends only on which filters are given, not on their values, so the same few
+ * queries are compiled once by Hibernate and prepared once by the database.
+ */
+final class QueryConditions {
+    private final List<String> causes = new ArrayList<>();
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    String parameter(Object value) {
+        var name = "p" + parameters.size();
+        parameters.put(name, value);
+        return name;
+    }
+
+    // %s in the cause is replaced with the name of the parameter bound to the value
+    void add(String cause, Object value) {
+        causes.add(String.format(cause, parameter(value)));
+    }
+
+    void add(String cause) {
+        causes.add(cause);
+    }
+
+    Map<String, Object> parameters() {
+        return parameters;
+    }
+
+    String toWhereClause() {
+        return causes.isEmpty() ? "" : " where " + String.join(" and ", causes);
+    }
+}
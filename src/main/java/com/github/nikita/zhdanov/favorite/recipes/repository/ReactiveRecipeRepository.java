@@ -0,0 +1,344 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.ContinuationToken;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChange;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeContentHash;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeIngredientTerms;
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * R2DBC counterpart of {@link RecipeRepository} and {@link RecipeSearchRepository} used by the reactive API.
+ * A recipe is read with its ingredients in one query, the rows of a recipe are folded into it as they arrive,
+ * so the recipes are emitted one by one at the pace they are requested.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveRecipeRepository {
+    private static final String SELECT_RECIPES = "select r.id, r.name, r.instructions, r.vegetarian, r.version, " +
+            "i.id as ingredient_id, i.name as ingredient_name, i.amount as ingredient_amount from %s " +
+            "left join recipe_ingredients i on i.recipe_id = r.id ";
+    private static final String ORDER_BY = " order by r.id, i.position";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+    @Autowired
+    private FullTextQueryBuilder fullTextQueryBuilder;
+
+    public Mono<Recipe> findById(String id) {
+        return databaseClient.sql(String.format(SELECT_RECIPES, "recipes r") + "where r.id = :id" + ORDER_BY)
+                .bind("id", Uuids.toBytes(id))
+                .map(ReactiveRecipeRepository::toRecipe)
+                .all()
+                .reduce(ReactiveRecipeRepository::merge);
+    }
+
+    public Flux<Recipe> findAllById(Collection<String> ids) {
+        var where = new QueryConditions();
+        where.add("r.id in (:%s)", ids.stream().map(Uuids::toBytes).collect(Collectors.toList()));
+        return select(String.format(SELECT_RECIPES, "recipes r") + where.toWhereClause() + ORDER_BY, where);
+    }
+
+    public Mono<Long> findVersion(String id) {
+        return databaseClient.sql("select version from recipes where id = :id")
+                .bind("id", Uuids.toBytes(id))
+                .map(row -> row.get("version", Long.class))
+                .one();
+    }
+
+    // UUID of the recipe the legacy id was given to, like RecipeLegacyIdRepository
+    public Mono<String> findIdByLegacyId(String legacyId) {
+        return databaseClient.sql("select recipe_id from recipe_legacy_ids where legacy_id = :legacyId")
+                .bind("legacyId", legacyId)
+                .map(row -> Uuids.fromBytes(row.get("recipe_id", byte[].class)))
+                .one()
+                .defaultIfEmpty(Uuids.fromLegacy(legacyId));
+    }
+
+    // One page of the recipes matching the filters, the page is selected by ids first like in RecipeSearchRepository
+    public Flux<Recipe> search(RecipeFilters filters) {
+        return Flux.defer(() -> {
+            var where = createFilterCauses(filters);
+            if (filters.getContinuationToken() != null) {
+                where.add("r.id > :%s", Uuids.toBytes(ContinuationToken.decode(filters)));
+            }
+            var offset = filters.getContinuationToken() == null ? filters.getPageNumber() * filters.getPageSize() : 0;
+            // The page is bound too, so every page of a search runs the same statement
+            var page = "(select r.id from recipes r" + where.toWhereClause() +
+                    " order by r.id limit :" + where.parameter(filters.getPageSize()) +
+                    " offset :" + where.parameter(offset) + ") p join recipes r on r.id = p.id";
+            return select(String.format(SELECT_RECIPES, page) + ORDER_BY, where);
+        });
+    }
+
+    // All the recipes matching the filters, pagination is ignored
+    public Flux<Recipe> scroll(RecipeFilters filters) {
+        return Flux.defer(() -> {
+            var where = createFilterCauses(filters);
+            return select(String.format(SELECT_RECIPES, "recipes r") + where.toWhereClause() + ORDER_BY, where);
+        });
+    }
+
+    // Counts of all the recipes matching the filters, see RecipeSearchRepository.countFacets
+    public Mono<RecipeFacets> countFacets(RecipeFilters filters) {
+        return Mono.defer(() -> {
+            var where = createFilterCauses(filters);
+            var vegetarianCounts = bind(databaseClient.sql("select r.vegetarian, count(*) as recipes from recipes r" +
+                            where.toWhereClause() + " group by r.vegetarian"), where)
+                    .map(row -> Map.entry(Boolean.TRUE.equals(row.get("vegetarian", Boolean.class)),
+                            row.get("recipes", Long.class)))
+                    .all()
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+            return vegetarianCounts.zipWith(countIngredients(filters), (counts, ingredients) -> RecipeFacets.builder()
+                    .vegetarian(counts.getOrDefault(true, 0L))
+                    .nonVegetarian(counts.getOrDefault(false, 0L))
+                    .ingredients(ingredients)
+                    .build());
+        });
+    }
+
+    private Mono<List<RecipeFacets.IngredientCount>> countIngredients(RecipeFilters filters) {
+        if (filters.getTopIngredients() == 0) {
+            return Mono.just(List.of());
+        }
+        var where = createFilterCauses(filters);
+        return bind(databaseClient.sql("select d.name, count(distinct i.recipe_id) as recipes " +
+                        "from recipe_ingredients i join ingredient_dictionary d on d.id = i.ingredient_id " +
+                        "where i.recipe_id in (select r.id from recipes r" + where.toWhereClause() + ") " +
+                        "group by i.ingredient_id, d.name order by recipes desc, i.ingredient_id " +
+                        "limit :" + where.parameter(filters.getTopIngredients())), where)
+                .map(row -> RecipeFacets.IngredientCount.builder()
+                        .name(row.get("name", String.class))
+                        .recipes(row.get("recipes", Long.class))
+                        .build())
+                .all()
+                .collectList();
+    }
+
+    // Must be called within a transaction. Emits false if the content is the same and nothing was written.
+    // Ingredients of a changed recipe are always replaced.
+    public Mono<Boolean> save(Recipe recipe) {
+        var recipeId = Uuids.toBytes(recipe.getId());
+        var contentHash = RecipeContentHash.of(recipe);
+        return databaseClient.sql("select count(*) as unchanged from recipes where id = :id and content_hash = :contentHash")
+                .bind("id", recipeId)
+                .bind("contentHash", contentHash)
+                .map(row -> row.get("unchanged", Long.class))
+                .one()
+                .flatMap(unchanged -> unchanged > 0
+                        ? Mono.just(false)
+                        : write(recipeId, recipe, contentHash).thenReturn(true));
+    }
+
+    private Mono<Void> write(byte[] recipeId, Recipe recipe, byte[] contentHash) {
+        return resolveDictionaryIds(recipe.getIngredients())
+                .flatMap(dictionaryIds -> databaseClient.sql("insert into recipes " +
+                                "(id, name, instructions, vegetarian, content_hash, ingredient_terms, version) " +
+                                "values (:id, :name, :instructions, :vegetarian, :contentHash, :ingredientTerms, " +
+                                ":version) " +
+                                "on duplicate key update name = values(name), instructions = values(instructions), " +
+                                "vegetarian = values(vegetarian), content_hash = values(content_hash), " +
+                                "ingredient_terms = values(ingredient_terms), version = version + 1")
+                        .bind("id", recipeId)
+                        .bind("name", recipe.getName())
+                        .bind("instructions", recipe.getInstructions())
+                        .bind("vegetarian", recipe.isVegetarian())
+                        .bind("contentHash", contentHash)
+                        .bind("ingredientTerms", RecipeIngredientTerms.of(dictionaryIds.values()))
+                        .bind("version", Recipe.initialVersion())
+                        .then()
+                        .then(deleteIngredients(recipeId))
+                        .thenMany(Flux.range(0, recipe.getIngredients().size()))
+                        .concatMap(position -> insertIngredient(recipeId, recipe.getIngredients().get(position),
+                                position, dictionaryIds))
+                        .then());
+    }
+
+    // Must be called within a transaction
+    public Mono<Boolean> delete(String id) {
+        var recipeId = Uuids.toBytes(id);
+        return deleteIngredients(recipeId)
+                .then(databaseClient.sql("delete from recipes where id = :id").bind("id", recipeId).fetch().rowsUpdated())
+                .map(deleted -> deleted > 0);
+    }
+
+    // Must be called within the transaction of the change, as the last statement. See RecipeChangeRepository.
+    public Mono<Void> recordChange(String id, RecipeChange.Operation operation) {
+        return databaseClient.sql("update recipe_change_sequence set value = last_insert_id(value + 1) where id = 1")
+                .then()
+                .then(databaseClient.sql("insert into recipe_changes (sequence, recipe_id, operation, version) " +
+                                "values (last_insert_id(), :id, :operation, (select version from recipes where id = :id))")
+                        .bind("id", Uuids.toBytes(id))
+                        .bind("operation", operation.name())
+                        .then());
+    }
+
+    private Mono<Void> deleteIngredients(byte[] recipeId) {
+        return databaseClient.sql("delete from recipe_ingredients where recipe_id = :recipeId")
+                .bind("recipeId", recipeId)
+                .then();
+    }
+
+    private Mono<Void> insertIngredient(byte[] recipeId, Ingredient ingredient, int position,
+                                        Map<String, Long> dictionaryIds) {
+        if (ingredient.getId() == null) {
+            ingredient.setId(Uuids.newTimeOrdered());
+        }
+        var dictionaryId = dictionaryIds.get(IngredientDictionaryRepository.normalize(ingredient.getName()));
+        ingredient.setDictionaryId(dictionaryId);
+        return databaseClient.sql("insert into recipe_ingredients (id, recipe_id, ingredient_id, name, amount, position) " +
+                        "values (:id, :recipeId, :dictionaryId, :name, :amount, :position)")
+                .bind("id", Uuids.toBytes(ingredient.getId()))
+                .bind("recipeId", recipeId)
+                .bind("dictionaryId", dictionaryId)
+                .bind("name", ingredient.getName().trim())
+                .bind("amount", ingredient.getAmount())
+                .bind("position", position)
+                .then();
+    }
+
+    // Dictionary ids by normalized name, missing names are added. See IngredientDictionaryRepository.resolve.
+    private Mono<Map<String, Long>> resolveDictionaryIds(List<Ingredient> ingredients) {
+        // Sorted, so concurrent transactions insert the same names in the same order and don't deadlock
+        var names = new TreeMap<String, String>();
+        ingredients.forEach(ingredient ->
+                names.putIfAbsent(IngredientDictionaryRepository.normalize(ingredient.getName()), ingredient.getName().trim()));
+        return Flux.fromIterable(names.entrySet())
+                .concatMap(name -> databaseClient.sql("insert ignore into ingredient_dictionary (name, normalized_name) " +
+                                "values (:name, :normalizedName)")
+                        .bind("name", name.getValue())
+                        .bind("normalizedName", name.getKey())
+                        .then()
+                        // A name equal to an existing one by collation only is not inserted, the existing id is used
+                        .then(databaseClient.sql("select id from ingredient_dictionary where normalized_name = :normalizedName")
+                                .bind("normalizedName", name.getKey())
+                                .map(row -> row.get("id", Long.class))
+                                .one())
+                        .map(id -> Map.entry(name.getKey(), id)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private Flux<Recipe> select(String sql, QueryConditions where) {
+        return bind(databaseClient.sql(sql), where)
+                .map(ReactiveRecipeRepository::toRecipe)
+                .all()
+                .bufferUntilChanged(Recipe::getId)
+                .map(rows -> rows.stream().reduce(ReactiveRecipeRepository::merge).orElseThrow());
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, QueryConditions where) {
+        for (var parameter : where.parameters().entrySet()) {
+            spec = spec.bind(parameter.getKey(), parameter.getValue());
+        }
+        return spec;
+    }
+
+    private QueryConditions createFilterCauses(RecipeFilters filters) {
+        var where = new QueryConditions();
+        addTextContainsCause(filters.getRecipeName(), "r.name", where);
+        addTextContainsCause(filters.getInstructions(), "r.instructions", where);
+        addIngredientsContainsCause(filters.getIngredientName(), where);
+        addIngredientListCauses(filters, where);
+        if (filters.getVegetarian() != null) {
+            where.add("r.vegetarian = :%s", filters.getVegetarian());
+        }
+        return where;
+    }
+
+    private void addTextContainsCause(RecipeFilters.ContainsTextFilter filter, String column, QueryConditions where) {
+        if (filter == null) {
+            return;
+        }
+        var like = "%" + filter.getContainsText().toLowerCase() + "%";
+        var fullTextQuery = fullTextQueryBuilder.toFullTextQuery(filter.getContainsText());
+        if (fullTextQuery == null) {
+            where.add(column + (filter.isReverse() ? " not like :%s" : " like :%s"), like);
+            return;
+        }
+
+        var mode = fullTextQueryBuilder.isBooleanMode() ? "boolean mode" : "natural language mode";
+        var match = "match(" + column + ") against (:" + where.parameter(fullTextQuery) + " in " + mode + ") > 0";
+        // The index only narrows the candidates down (to the ones with any of the words in natural language mode), LIKE
+        // keeps the "contains" semantics of the filter, the same as for the words too short for the index
+        var predicate = "(" + match + " and " + column + " like :" + where.parameter(like) + ")";
+        where.add(filter.isReverse() ? "not (" + predicate + ")" : predicate);
+    }
+
+    private void addIngredientsContainsCause(RecipeFilters.ExactTextFilter filter, QueryConditions where) {
+        if (filter == null) {
+            return;
+        }
+        // Semi-join on the dictionary, answered from the unique name and the (ingredient_id, recipe_id) indexes
+        where.add("r.id" + (filter.isReverse() ? " not in " : " in ") + "(select ri.recipe_id from recipe_ingredients ri " +
+                        "join ingredient_dictionary rd on rd.id = ri.ingredient_id where rd.normalized_name = :%s)",
+                IngredientDictionaryRepository.normalize(filter.getExactText()));
+    }
+
+    // Same conditions as RecipeSearchRepository, names are matched on the dictionary within the query
+    private void addIngredientListCauses(RecipeFilters filters, QueryConditions where) {
+        var includeNames = normalizedNames(filters.getIncludeIngredients());
+        var excludeNames = normalizedNames(filters.getExcludeIngredients());
+        if (!includeNames.isEmpty()) {
+            where.add("r.id in (select ri.recipe_id from recipe_ingredients ri " +
+                    "join ingredient_dictionary rd on rd.id = ri.ingredient_id " +
+                    "where rd.normalized_name in (:" + where.parameter(includeNames) + ") group by ri.recipe_id " +
+                    "having count(distinct ri.ingredient_id) = :" + where.parameter(includeNames.size()) + ")");
+        }
+        if (!excludeNames.isEmpty()) {
+            where.add("not exists (select 1 from recipe_ingredients ri " +
+                    "join ingredient_dictionary rd on rd.id = ri.ingredient_id " +
+                    "where ri.recipe_id = r.id and rd.normalized_name in (:%s))", excludeNames);
+        }
+    }
+
+    private static List<String> normalizedNames(List<String> names) {
+        if (names == null) {
+            return List.of();
+        }
+        return names.stream().map(IngredientDictionaryRepository::normalize).distinct().sorted()
+                .collect(Collectors.toList());
+    }
+
+    // Every row is a recipe with at most one ingredient
+    private static Recipe toRecipe(Row row) {
+        var ingredients = new ArrayList<Ingredient>();
+        var ingredientId = row.get("ingredient_id", byte[].class);
+        if (ingredientId != null) {
+            ingredients.add(Ingredient.builder()
+                    .id(Uuids.fromBytes(ingredientId))
+                    .name(row.get("ingredient_name", String.class))
+                    .amount(row.get("ingredient_amount", Integer.class))
+                    .build());
+        }
+        return Recipe.builder()
+                .id(Uuids.fromBytes(row.get("id", byte[].class)))
+                .name(row.get("name", String.class))
+                .instructions(row.get("instructions", String.class))
+                .vegetarian(Boolean.TRUE.equals(row.get("vegetarian", Boolean.class)))
+                .version(row.get("version", Long.class))
+                .ingredients(ingredients)
+                .build();
+    }
+
+    private static Recipe merge(Recipe recipe, Recipe row) {
+        recipe.getIngredients().addAll(row.getIngredients());
+        return recipe;
+    }
+}
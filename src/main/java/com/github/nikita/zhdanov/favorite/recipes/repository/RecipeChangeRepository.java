@@ -0,0 +1,88 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChange;
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Change feed of the recipes in recipe_changes. Entries are written by the transaction which makes the changes.
+ * Their sequence numbers come from the single row of recipe_change_sequence, which stays locked until that
+ * transaction commits, so the numbers follow the commit order: once a consumer saw an entry, no entry with a lower
+ * number can appear anymore.
+ */
+@Repository
+public class RecipeChangeRepository {
+    private static final int COMPACTION_CHUNK_SIZE = 10000;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Must be called within the transaction which made the changes, as late as possible: the next changes wait for it
+    public void record(List<RecipeChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("update recipe_change_sequence set value = last_insert_id(value + :count) where id = 1",
+                Map.of("count", changes.size()));
+        var last = jdbcTemplate.queryForObject("select last_insert_id()", Map.of(), Long.class);
+        var sequence = last - changes.size();
+        var parameters = new MapSqlParameterSource[changes.size()];
+        for (var index = 0; index < changes.size(); index++) {
+            var change = changes.get(index);
+            change.setSequence(++sequence);
+            parameters[index] = new MapSqlParameterSource()
+                    .addValue("sequence", change.getSequence())
+                    .addValue("recipeId", Uuids.toBytes(change.getRecipeId()))
+                    .addValue("operation", change.getOperation().name())
+                    .addValue("version", change.getVersion());
+        }
+        jdbcTemplate.batchUpdate("insert into recipe_changes (sequence, recipe_id, operation, version) " +
+                "values (:sequence, :recipeId, :operation, :version)", parameters);
+    }
+
+    public List<RecipeChange> findAfter(long sequence, int limit) {
+        return jdbcTemplate.query("select sequence, recipe_id, operation, version, changed_at from recipe_changes " +
+                        "where sequence > :sequence order by sequence limit :limit",
+                Map.of("sequence", sequence, "limit", limit),
+                (resultSet, rowNumber) -> RecipeChange.builder()
+                        .sequence(resultSet.getLong("sequence"))
+                        .recipeId(Uuids.fromBytes(resultSet.getBytes("recipe_id")))
+                        .operation(RecipeChange.Operation.valueOf(resultSet.getString("operation")))
+                        .version(resultSet.getObject("version", Long.class))
+                        .changedAt(resultSet.getTimestamp("changed_at").toInstant())
+                        .build());
+    }
+
+    public long lastSequence() {
+        return jdbcTemplate.queryForObject("select value from recipe_change_sequence where id = 1", Map.of(), Long.class);
+    }
+
+    // Removes the entries made before the given time which have a later entry of the same recipe. A consumer at any
+    // position still gets the later entry, which tells the same and more. Returns the number of removed entries.
+    public int compact(Instant before) {
+        var range = jdbcTemplate.queryForMap("select min(sequence) as first, max(sequence) as last from recipe_changes " +
+                "where changed_at < :before", Map.of("before", Timestamp.from(before)));
+        if (range.get("first") == null) {
+            return 0;
+        }
+        var first = ((Number) range.get("first")).longValue();
+        var last = ((Number) range.get("last")).longValue();
+        var removed = 0;
+        // Each chunk is its own statement, so the rows are never locked all at once
+        for (var from = first - 1; from < last; from += COMPACTION_CHUNK_SIZE) {
+            removed += jdbcTemplate.update("delete c from recipe_changes c join recipe_changes n " +
+                            "on n.recipe_id = c.recipe_id and n.sequence > c.sequence " +
+                            "where c.sequence > :from and c.sequence <= :to",
+                    Map.of("from", from, "to", Math.min(from + COMPACTION_CHUNK_SIZE, last)));
+        }
+        return removed;
+    }
+}
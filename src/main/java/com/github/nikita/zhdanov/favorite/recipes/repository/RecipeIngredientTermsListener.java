@@ -0,0 +1,34 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeIngredientTerms;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import java.util.stream.Collectors;
+
+public class RecipeIngredientTermsListener {
+    @Autowired
+    private IngredientDictionaryRepository ingredientDictionaryRepository;
+
+    @PrePersist
+    @PreUpdate
+    public void updateIngredientTerms(Recipe recipe) {
+        // Ingredients which were not loaded were not changed either
+        if (recipe.getIngredients() == null || !Hibernate.isInitialized(recipe.getIngredients())) {
+            return;
+        }
+        var unresolved = recipe.getIngredients().stream()
+                .filter(ingredient -> ingredient.getDictionaryId() == null)
+                .collect(Collectors.toList());
+        if (!unresolved.isEmpty()) {
+            ingredientDictionaryRepository.resolve(unresolved);
+        }
+        recipe.setIngredientTerms(RecipeIngredientTerms.of(recipe.getIngredients().stream()
+                .map(Ingredient::getDictionaryId)
+                .collect(Collectors.toList())));
+    }
+}
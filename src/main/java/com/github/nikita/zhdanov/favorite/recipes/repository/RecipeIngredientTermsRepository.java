@@ -0,0 +1,49 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recomputes recipes.ingredient_terms from the stored ingredients, for example after the column was changed manually.
+ * The recipes are updated in chunks of their ids, each chunk in its own statement, so the table is never locked whole.
+ */
+@Repository
+public class RecipeIngredientTermsRepository {
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Returns the number of recipes which were updated
+    public int rebuild() {
+        var rebuilt = 0;
+        byte[] lastId = null;
+        while (true) {
+            var parameters = new HashMap<String, Object>();
+            parameters.put("limit", CHUNK_SIZE);
+            var after = "";
+            if (lastId != null) {
+                parameters.put("lastId", lastId);
+                after = " where id > :lastId";
+            }
+            List<byte[]> ids = jdbcTemplate.queryForList("select id from recipes" + after + " order by id limit :limit",
+                    parameters, byte[].class);
+            if (ids.isEmpty()) {
+                return rebuilt;
+            }
+            // Same as the 1.5.0 changelog backfill and RecipeIngredientTerms
+            jdbcTemplate.update("update recipes r set ingredient_terms = (" +
+                            "select group_concat(distinct concat('ing', ri.ingredient_id) order by ri.ingredient_id " +
+                            "separator ' ') from recipe_ingredients ri where ri.recipe_id = r.id) " +
+                            "where r.id in (:ids)",
+                    Map.of("ids", ids));
+            rebuilt += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+
+/**
+ * Legacy ids of the recipes converted to UUIDs by changelog 1.2.0, see {@link Uuids}.
+ */
+@Repository
+public class RecipeLegacyIdRepository {
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // UUID of the recipe the legacy id was given to, matched in any case like the legacy ids were
+    public String findRecipeId(String legacyId) {
+        return jdbcTemplate.query("select recipe_id from recipe_legacy_ids where legacy_id = :legacyId",
+                        Map.of("legacyId", legacyId), (resultSet, rowNumber) -> Uuids.fromBytes(resultSet.getBytes(1)))
+                .stream()
+                .findFirst()
+                .orElseGet(() -> Uuids.fromLegacy(legacyId));
+    }
+}
@@ -1,6 +1,23 @@
 package com.github.nikita.zhdanov.favorite.recipes.repository;
 
 import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
-public interface RecipeRepository extends CrudRepository<Recipe, String> {}
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface RecipeRepository extends CrudRepository<Recipe, String> {
+    @Override
+    @EntityGraph(attributePaths = "ingredients")
+    Optional<Recipe> findById(String id);
+
+    @Query("select r.version from Recipe r where r.id = :id")
+    Optional<Long> findVersion(@Param("id") String id);
+
+    @Query("select distinct r from Recipe r left join fetch r.ingredients where r.id in :ids")
+    List<Recipe> findAllWithIngredients(@Param("ids") Collection<String> ids);
+}
@@ -0,0 +1,14 @@
+package com.github.nikita.zhdanov.favorite.recipes.repository;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+
+import java.util.List;
+
+public interface RecipeSearchEngine {
+    // Ids of one page of the recipes matching the filters, ordered by id
+    List<String> findIds(RecipeFilters filters);
+
+    // Counts of all the recipes matching the filters, pagination is ignored
+    RecipeFacets countFacets(RecipeFilters filters);
+}
@@ -1,86 +1,247 @@
 package com.github.nikita.zhdanov.favorite.recipes.repository;
 
+import com.github.nikita.zhdanov.favorite.recipes.config.FullTextSearchFunctionContributor;
+import com.github.nikita.zhdanov.favorite.recipes.metrics.SearchMetrics;
+import com.github.nikita.zhdanov.favorite.recipes.model.ContinuationToken;
 import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
 import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeIngredientTerms;
+import org.hibernate.ScrollMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
-import javax.persistence.criteria.*;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Repository
-public class RecipeSearchRepository {
+public class RecipeSearchRepository implements RecipeSearchEngine {
+    private static final int SCROLL_FETCH_SIZE = 1000;
+
     @PersistenceContext
     private EntityManager entityManager;
+    @Autowired
+    private IngredientDictionaryRepository ingredientDictionaryRepository;
+    @Autowired
+    private SearchMetrics searchMetrics;
+    @Autowired
+    private FullTextQueryBuilder fullTextQueryBuilder;
+
+    @Value("${recipes.search.ingredient-terms.enabled:false}")
+    private boolean ingredientTerms;
 
-    public Collection<Recipe> find(RecipeFilters filters) {
-        var criteriaBuilder = entityManager.getCriteriaBuilder();
-        var query = criteriaBuilder.createQuery(Recipe.class);
-        var root = query.from(Recipe.class);
-        var whereCauses = new ArrayList<Predicate>();
+    @Override
+    public List<String> findIds(RecipeFilters filters) {
+        return searchMetrics.time(SearchMetrics.REPOSITORY, filters, () -> findPageIds(filters));
+    }
+
+    private List<String> findPageIds(RecipeFilters filters) {
+        var where = createFilterCauses(filters);
+        if (filters.getContinuationToken() != null) {
+            where.add("r.id > :%s", ContinuationToken.decode(filters));
+        }
+        var query = createQuery("select distinct r.id from Recipe r" + where.toWhereClause() + " order by r.id",
+                String.class, where).setMaxResults(filters.getPageSize());
+        if (filters.getContinuationToken() == null) {
+            query.setFirstResult(filters.getPageNumber() * filters.getPageSize());
+        }
+        return query.getResultList();
+    }
 
-        addTextContainsCause(filters.getRecipeName(), "name", root, whereCauses);
-        addTextContainsCause(filters.getInstructions(), "instructions", root, whereCauses);
-        addIngredientsContainsCause(filters.getIngredientName(), whereCauses, root);
-        addVegetarianCause(filters.getVegetarian(), whereCauses, root);
+    @Override
+    public RecipeFacets countFacets(RecipeFilters filters) {
+        var where = createFilterCauses(filters);
+        var query = createQuery("select r.vegetarian, count(r) from Recipe r" + where.toWhereClause() +
+                " group by r.vegetarian", Tuple.class, where);
 
-        query.select(root).where(whereCauses.toArray(new Predicate[0]));
+        var facets = RecipeFacets.builder().ingredients(countIngredients(filters));
+        for (var counts : query.getResultList()) {
+            if (counts.get(0, Boolean.class)) {
+                facets.vegetarian(counts.get(1, Long.class));
+            } else {
+                facets.nonVegetarian(counts.get(1, Long.class));
+            }
+        }
+        return facets.build();
+    }
 
-        return entityManager.createQuery(query.select(root))
-                .setFirstResult(filters.getPageNumber() * filters.getPageSize())
-                .setMaxResults(filters.getPageSize())
+    // The most common ingredients of the matching recipes, counted on the (ingredient_id, recipe_id) index
+    private List<RecipeFacets.IngredientCount> countIngredients(RecipeFilters filters) {
+        if (filters.getTopIngredients() == 0) {
+            return List.of();
+        }
+        var where = createFilterCauses(filters);
+        var counts = createQuery("select i.dictionaryId, count(distinct i.recipeId) from Ingredient i " +
+                        "where i.recipeId in (select r.id from Recipe r" + where.toWhereClause() + ") " +
+                        "group by i.dictionaryId order by count(distinct i.recipeId) desc, i.dictionaryId",
+                Tuple.class, where)
+                .setMaxResults(filters.getTopIngredients())
                 .getResultList();
+        var names = ingredientDictionaryRepository.findNames(
+                counts.stream().map(count -> count.get(0, Long.class)).collect(Collectors.toList()));
+        return counts.stream()
+                .map(count -> RecipeFacets.IngredientCount.builder()
+                        .name(names.get(count.get(0, Long.class)))
+                        .recipes(count.get(1, Long.class))
+                        .build())
+                .collect(Collectors.toList());
     }
 
-    private void addTextContainsCause(RecipeFilters.ContainsTextFilter filter, String fieldName, Root<Recipe> root,
-                                      ArrayList<Predicate> whereCauses) {
-        if (filter == null) {
-            return;
+    // Streams all recipes matching the filters, pagination is ignored. Must be called within a transaction.
+    public void scroll(RecipeFilters filters, Consumer<Recipe> consumer) {
+        var where = createFilterCauses(filters);
+        // Ordering by id keeps the fetched ingredient rows of a recipe together, so it can be emitted at once
+        var query = createQuery("select r from Recipe r left join fetch r.ingredients" + where.toWhereClause() +
+                " order by r.id", Recipe.class, where);
+
+        var session = entityManager.unwrap(Session.class);
+        try (var results = query
+                .unwrap(org.hibernate.query.Query.class)
+                .setReadOnly(true)
+                .setFetchSize(SCROLL_FETCH_SIZE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                var recipe = (Recipe) results.get(0);
+                consumer.accept(recipe);
+                session.evict(recipe);
+            }
         }
-        var criteriaBuilder = entityManager.getCriteriaBuilder();
-        var criteria = criteriaBuilder
-                .lower(criteriaBuilder.literal("%" + filter.getContainsText().toLowerCase() + "%"));
-        Path<String> path = root.get(fieldName);
-        addToWhereCauses(criteriaBuilder, whereCauses, criteria, path, filter.isReverse());
     }
 
-    private void addIngredientsContainsCause(RecipeFilters.ExactTextFilter filter, ArrayList<Predicate> whereCauses,
-                                             Root<Recipe> recipeRoot) {
+    // The JPQL only depends on which filters are given, Hibernate keeps the compiled queries in its query plan cache
+    private <T> TypedQuery<T> createQuery(String jpql, Class<T> resultClass, QueryConditions where) {
+        var query = entityManager.createQuery(jpql, resultClass);
+        where.parameters().forEach(query::setParameter);
+        return query;
+    }
+
+    private QueryConditions createFilterCauses(RecipeFilters filters) {
+        var where = new QueryConditions();
+        addTextContainsCause(filters.getRecipeName(), "r.name", where);
+        addTextContainsCause(filters.getInstructions(), "r.instructions", where);
+        addIngredientsContainsCause(filters.getIngredientName(), where);
+        addIngredientListCauses(filters, where);
+        if (filters.getVegetarian() != null) {
+            where.add("r.vegetarian = :%s", filters.getVegetarian());
+        }
+        return where;
+    }
+
+    private void addTextContainsCause(RecipeFilters.ContainsTextFilter filter, String path, QueryConditions where) {
         if (filter == null) {
             return;
         }
+        var like = "%" + filter.getContainsText().toLowerCase() + "%";
+        var fullTextQuery = fullTextQueryBuilder.toFullTextQuery(filter.getContainsText());
+        if (fullTextQuery == null) {
+            where.add(path + (filter.isReverse() ? " not like :%s" : " like :%s"), like);
+            return;
+        }
 
-        var criteriaBuilder = entityManager.getCriteriaBuilder();
-        var ingredients = recipeRoot.join("ingredients", JoinType.LEFT);
-
-        var lowerCriteria = criteriaBuilder.lower(criteriaBuilder.literal(filter.getExactText().toLowerCase()));
-        var filterCriteria = criteriaBuilder.equal(ingredients.get("name"), lowerCriteria);
-        ingredients.on(filterCriteria);
+        var function = fullTextQueryBuilder.isBooleanMode() ? FullTextSearchFunctionContributor.MATCH_BOOLEAN_MODE
+                : FullTextSearchFunctionContributor.MATCH_NATURAL_LANGUAGE_MODE;
+        var match = function + "(" + path + ", :" + where.parameter(fullTextQuery) + ") > 0";
+        // The index only narrows the candidates down (to the ones with any of the words in natural language mode), LIKE
+        // keeps the "contains" semantics of the filter, the same as for the words too short for the index
+        var predicate = "(" + match + " and " + path + " like :" + where.parameter(like) + ")";
+        where.add(filter.isReverse() ? "not (" + predicate + ")" : predicate);
+    }
 
-        if (filter.isReverse()) {
-            whereCauses.add(criteriaBuilder.isNull(ingredients));
-        } else {
-            whereCauses.add(criteriaBuilder.isNotNull(ingredients));
+    private void addIngredientsContainsCause(RecipeFilters.ExactTextFilter filter, QueryConditions where) {
+        if (filter == null) {
+            return;
+        }
+        var dictionaryId = ingredientDictionaryRepository.find(filter.getExactText());
+        if (dictionaryId.isEmpty()) {
+            // No recipe has an ingredient which is not in the dictionary
+            if (!filter.isReverse()) {
+                where.add("1 = 0");
+            }
+            return;
+        }
+        if (ingredientTerms) {
+            // Answered from the FULLTEXT index of the recipes table, without reading the ingredients
+            var match = FullTextSearchFunctionContributor.MATCH_BOOLEAN_MODE + "(r.ingredientTerms, :%s) > 0";
+            where.add(filter.isReverse() ? "not (" + match + ")" : match,
+                    "+" + RecipeIngredientTerms.term(dictionaryId.get()));
+            return;
         }
+        // Semi-join on the integer dictionary id, answered from the (ingredient_id, recipe_id) index
+        where.add("r.id" + (filter.isReverse() ? " not in " : " in ") +
+                "(select fi.recipeId from Ingredient fi where fi.dictionaryId = :%s)", dictionaryId.get());
     }
 
-    private void addVegetarianCause(Boolean vegetarian, ArrayList<Predicate> whereCauses, Root<Recipe> root) {
-        if (vegetarian == null) {
+    // Every included and none of the excluded ingredients, with one condition for each list whatever its length
+    private void addIngredientListCauses(RecipeFilters filters, QueryConditions where) {
+        var includeNames = normalizedNames(filters.getIncludeIngredients());
+        var excludeNames = normalizedNames(filters.getExcludeIngredients());
+        if (includeNames.isEmpty() && excludeNames.isEmpty()) {
             return;
         }
-        var criteriaBuilder = entityManager.getCriteriaBuilder();
-        var criteria = root.get("vegetarian");
-        whereCauses.add(criteriaBuilder.equal(criteria, vegetarian));
+        var names = new HashSet<>(includeNames);
+        names.addAll(excludeNames);
+        var dictionaryIds = ingredientDictionaryRepository.findAll(names);
+        // No recipe has an ingredient which is not in the dictionary
+        if (!dictionaryIds.keySet().containsAll(includeNames)) {
+            where.add("1 = 0");
+            return;
+        }
+        var includeIds = dictionaryIds(includeNames, dictionaryIds);
+        var excludeIds = dictionaryIds(excludeNames, dictionaryIds);
+
+        if (ingredientTerms) {
+            // A single MATCH for both lists, but boolean mode finds nothing with excluded terms only
+            if (!includeIds.isEmpty()) {
+                var terms = new ArrayList<String>();
+                includeIds.forEach(id -> terms.add("+" + RecipeIngredientTerms.term(id)));
+                excludeIds.forEach(id -> terms.add("-" + RecipeIngredientTerms.term(id)));
+                where.add(FullTextSearchFunctionContributor.MATCH_BOOLEAN_MODE + "(r.ingredientTerms, :%s) > 0",
+                        String.join(" ", terms));
+            } else if (!excludeIds.isEmpty()) {
+                where.add("not (" + FullTextSearchFunctionContributor.MATCH_BOOLEAN_MODE +
+                        "(r.ingredientTerms, :%s) > 0)", RecipeIngredientTerms.of(excludeIds));
+            }
+            return;
+        }
+        if (!includeIds.isEmpty()) {
+            // Recipes having all the ingredients, grouped on the (ingredient_id, recipe_id) index
+            where.add("r.id in (select fi.recipeId from Ingredient fi where fi.dictionaryId in (:" +
+                    where.parameter(includeIds) + ") group by fi.recipeId " +
+                    "having count(distinct fi.dictionaryId) = :" + where.parameter((long) includeIds.size()) + ")");
+        }
+        if (!excludeIds.isEmpty()) {
+            // Checked on the few ingredient rows of every candidate recipe, found by the recipe_id index
+            where.add("not exists (select fi.id from Ingredient fi where fi.recipeId = r.id " +
+                    "and fi.dictionaryId in (:%s))", excludeIds);
+        }
     }
 
-    private void addToWhereCauses(CriteriaBuilder criteriaBuilder, ArrayList<Predicate> whereCauses,
-                                  Expression<String> criteria, Path<String> path, boolean reverse) {
-        if (reverse) {
-            whereCauses.add(criteriaBuilder.notLike(path, criteria));
-        } else {
-            whereCauses.add(criteriaBuilder.like(path, criteria));
+    private static Set<String> normalizedNames(List<String> names) {
+        if (names == null) {
+            return Set.of();
         }
+        return names.stream().map(IngredientDictionaryRepository::normalize).collect(Collectors.toSet());
+    }
+
+    // Sorted, so the same names are bound as the same list. Names equal by collation only have the same id
+    private static List<Long> dictionaryIds(Set<String> names, Map<String, Long> dictionaryIds) {
+        return names.stream()
+                .map(dictionaryIds::get)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,116 @@
+package com.github.nikita.zhdanov.favorite.recipes.service;
+
+import com.github.nikita.zhdanov.favorite.recipes.error.RecipeNotExists;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChange;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import com.github.nikita.zhdanov.favorite.recipes.repository.ReactiveRecipeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking counterpart of {@link RecipeService}. Reads always go to the database: the in-process caches and the
+ * search index are blocking, but they are still told about the changes, so they stay coherent with the database.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveRecipeService {
+    @Autowired
+    private ReactiveRecipeRepository reactiveRecipeRepository;
+    @Autowired
+    private TransactionalOperator reactiveTransactionalOperator;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    public Mono<Void> save(Recipe recipe) {
+        return Mono.defer(() -> {
+            recipe.setId(Uuids.canonical(recipe.getId()));
+            return reactiveRecipeRepository.save(recipe)
+                    .flatMap(changed -> changed
+                            ? recordChange(recipe.getId(), RecipeChange.Operation.UPSERT) : Mono.just(false))
+                    .as(reactiveTransactionalOperator::transactional);
+        }).flatMap(changed -> changed ? publishChanged(recipe.getId()) : Mono.empty());
+    }
+
+    public Mono<Void> delete(String id) {
+        return recipeId(id)
+                .switchIfEmpty(Mono.error(() -> new RecipeNotExists(id)))
+                .flatMap(recipeId -> reactiveRecipeRepository.delete(recipeId)
+                        .flatMap(deleted -> deleted
+                                ? recordChange(recipeId, RecipeChange.Operation.DELETE) : Mono.just(false))
+                        .as(reactiveTransactionalOperator::transactional)
+                        .flatMap(deleted -> deleted ? publishChanged(recipeId) : Mono.error(new RecipeNotExists(id))));
+    }
+
+    public Mono<Recipe> get(String id) {
+        return recipeId(id).flatMap(reactiveRecipeRepository::findById)
+                .switchIfEmpty(Mono.error(() -> new RecipeNotExists(id)));
+    }
+
+    // Recipes found by the requested ids, read in one query
+    public Mono<Map<String, Recipe>> getAll(Collection<String> ids) {
+        return Flux.fromIterable(new HashSet<>(ids))
+                .concatMap(id -> recipeId(id).map(recipeId -> Map.entry(id, recipeId)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(recipeIds -> recipeIds.isEmpty() ? Mono.just(Map.<String, Recipe>of())
+                        : reactiveRecipeRepository.findAllById(new HashSet<>(recipeIds.values()))
+                        .collectMap(Recipe::getId)
+                        .map(recipes -> recipeIds.entrySet().stream()
+                                .filter(entry -> recipes.containsKey(entry.getValue()))
+                                .collect(Collectors.toMap(Map.Entry::getKey, entry -> recipes.get(entry.getValue())))));
+    }
+
+    public Mono<Long> getVersion(String id) {
+        return recipeId(id).flatMap(reactiveRecipeRepository::findVersion)
+                .switchIfEmpty(Mono.error(() -> new RecipeNotExists(id)));
+    }
+
+    // Canonical UUID of an id given to a lookup like in RecipeService, empty for what was never an id of a recipe
+    private Mono<String> recipeId(String id) {
+        if (Uuids.isUuid(id)) {
+            return Mono.just(Uuids.canonical(id));
+        }
+        if (!Uuids.isLegacy(id)) {
+            return Mono.empty();
+        }
+        return reactiveRecipeRepository.findIdByLegacyId(id);
+    }
+
+    public Flux<Recipe> search(RecipeFilters filters) {
+        return reactiveRecipeRepository.search(filters);
+    }
+
+    public Mono<RecipeFacets> countFacets(RecipeFilters filters) {
+        return reactiveRecipeRepository.countFacets(filters);
+    }
+
+    public Flux<Recipe> export(RecipeFilters filters) {
+        return reactiveRecipeRepository.scroll(filters);
+    }
+
+    // In the transaction of the change, like RecipeService does. Emits true.
+    private Mono<Boolean> recordChange(String recipeId, RecipeChange.Operation operation) {
+        return reactiveRecipeRepository.recordChange(recipeId, operation).thenReturn(true);
+    }
+
+    // Listeners may block (the search index re-reads the recipe through JPA), so they don't run on the event loop
+    private Mono<Void> publishChanged(String recipeId) {
+        return Mono.fromRunnable(() -> eventPublisher.publishEvent(RecipeChangedEvent.local(recipeId)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.nikita.zhdanov.favorite.recipes.service;
+
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.execution.DatabaseBulkhead;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChangesResponse;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Incremental sync for downstream copies of the recipes such as search clusters and CDN caches. A consumer keeps the
+ * sequence number of the last change it applied and asks for the changes after it (see RecipeChangeRepository).
+ * A request which finds none may wait for the next change without holding a thread: it is answered on a change made
+ * by this node, or by the periodic check which sees the changes of the other nodes.
+ * <p>
+ * Entries superseded by a later change of the same recipe are compacted periodically, so the feed read from 0 has
+ * about one entry per recipe (deleted recipes keep theirs).
+ */
+@Slf4j
+@Service
+public class RecipeChangeFeed implements SmartLifecycle {
+    @Autowired
+    private RecipeChangeRepository recipeChangeRepository;
+    @Autowired
+    private DatabaseBulkhead databaseBulkhead;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${recipes.changes.poll-interval:1s}")
+    private Duration pollInterval;
+    @Value("${recipes.changes.compact-after:1h}")
+    private Duration compactAfter;
+    @Value("${recipes.changes.compaction-interval:10m}")
+    private Duration compactionInterval;
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    // Many changes in a row (such as an import) answer the waiters once
+    private final AtomicBoolean answerScheduled = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+    private volatile boolean running;
+
+    // Completes at once if there are changes or nothing to wait for, otherwise on the next change or after the wait
+    public CompletableFuture<RecipeChangesResponse> changesAfter(long after, int limit, Duration wait) {
+        var changes = find(after, limit);
+        if (!changes.getChanges().isEmpty() || wait.isZero() || !running) {
+            return CompletableFuture.completedFuture(changes);
+        }
+        var waiter = new Waiter(after, limit, System.nanoTime() + wait.toNanos());
+        waiters.add(waiter);
+        return waiter.result;
+    }
+
+    private RecipeChangesResponse find(long after, int limit) {
+        var changes = readOnly(() -> recipeChangeRepository.findAfter(after, limit));
+        return RecipeChangesResponse.builder()
+                .changes(changes)
+                .lastSequence(changes.isEmpty() ? after : changes.get(changes.size() - 1).getSequence())
+                .build();
+    }
+
+    @EventListener
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        if (running && !waiters.isEmpty() && answerScheduled.compareAndSet(false, true)) {
+            executor.execute(this::answerWaiters);
+        }
+    }
+
+    private void answerWaiters() {
+        answerScheduled.set(false);
+        if (waiters.isEmpty()) {
+            return;
+        }
+        try {
+            var lastSequence = readOnly(recipeChangeRepository::lastSequence);
+            var now = System.nanoTime();
+            for (var waiter : waiters) {
+                if (waiter.after < lastSequence) {
+                    var changes = find(waiter.after, waiter.limit);
+                    if (!changes.getChanges().isEmpty()) {
+                        answer(waiter, changes);
+                        continue;
+                    }
+                }
+                if (now - waiter.deadline >= 0) {
+                    answer(waiter, noChanges(waiter.after));
+                }
+            }
+        } catch (RuntimeException e) {
+            // The waiters stay, they are answered by the next check
+            log.warn("Checking the recipe changes for waiting requests failed: {}", e.getMessage());
+        }
+    }
+
+    private void answer(Waiter waiter, RecipeChangesResponse changes) {
+        if (waiters.remove(waiter)) {
+            waiter.result.complete(changes);
+        }
+    }
+
+    private static RecipeChangesResponse noChanges(long after) {
+        return RecipeChangesResponse.builder().changes(List.of()).lastSequence(after).build();
+    }
+
+    // Reads go to a read replica when there are some, a replica has a prefix of the feed like any other consumer
+    private <T> T readOnly(Supplier<T> query) {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return databaseBulkhead.call(() -> transactionTemplate.execute(status -> query.get()));
+    }
+
+    private void compact() {
+        try {
+            var removed = databaseBulkhead.call(() -> recipeChangeRepository.compact(Instant.now().minus(compactAfter)));
+            if (removed > 0) {
+                log.info("Compacted {} superseded recipe changes", removed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Compacting the recipe changes failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "recipe-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::answerWaiters, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::compact, compactionInterval.toMillis(), compactionInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    // Waiting requests are answered with no changes, the consumers ask again elsewhere or after the restart
+    @Override
+    public void stop() {
+        running = false;
+        executor.shutdownNow();
+        for (var waiter : waiters) {
+            answer(waiter, noChanges(waiter.after));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static class Waiter {
+        private final long after;
+        private final int limit;
+        private final long deadline;
+        private final CompletableFuture<RecipeChangesResponse> result = new CompletableFuture<>();
+
+        Waiter(long after, int limit, long deadline) {
+            this.after = after;
+            this.limit = limit;
+            this.deadline = deadline;
+        }
+    }
+}
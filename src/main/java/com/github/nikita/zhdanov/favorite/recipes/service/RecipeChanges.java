@@ -0,0 +1,66 @@
+package com.github.nikita.zhdanov.favorite.recipes.service;
+
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeContentHash;
+import com.github.nikita.zhdanov.favorite.recipes.repository.IngredientDictionaryRepository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+
+/**
+ * Applies a recipe sent by a client to the stored one. Ingredients are matched by normalized name: matched rows keep
+ * their ids and get only the spelling of the name, the amount and the position updated, new names are added and
+ * missing ones are deleted as orphans.
+ * Dictionary ids of the sent ingredients must be resolved before.
+ */
+final class RecipeChanges {
+    private RecipeChanges() {
+    }
+
+    // Also resets what a persist in a rolled back transaction left behind, so the recipe can be persisted again.
+    // Hibernate keeps a positive version given to a new entity.
+    static void prepareNew(Recipe recipe) {
+        recipe.setContentHash(RecipeContentHash.of(recipe));
+        recipe.setVersion(Recipe.initialVersion());
+        recipe.getIngredients().forEach(ingredient -> ingredient.setId(null));
+    }
+
+    // Returns false if the content is the same, then nothing is changed and nothing will be written
+    static boolean apply(Recipe existingRecipe, Recipe recipe) {
+        var contentHash = RecipeContentHash.of(recipe);
+        if (Arrays.equals(existingRecipe.getContentHash(), contentHash)) {
+            return false;
+        }
+        existingRecipe.setName(recipe.getName());
+        existingRecipe.setInstructions(recipe.getInstructions());
+        existingRecipe.setVegetarian(recipe.isVegetarian());
+        existingRecipe.setContentHash(contentHash);
+
+        // A name may be repeated in a recipe, the repeats are matched in order
+        var existingByName = new HashMap<String, Deque<Ingredient>>();
+        existingRecipe.getIngredients().forEach(ingredient -> existingByName
+                .computeIfAbsent(IngredientDictionaryRepository.normalize(ingredient.getName()), name -> new ArrayDeque<>())
+                .add(ingredient));
+        var ingredients = new ArrayList<Ingredient>(recipe.getIngredients().size());
+        for (var ingredient : recipe.getIngredients()) {
+            var matches = existingByName.get(IngredientDictionaryRepository.normalize(ingredient.getName()));
+            var match = matches == null ? null : matches.poll();
+            if (match == null) {
+                ingredient.setId(null);
+                ingredients.add(ingredient);
+            } else {
+                match.setName(ingredient.getName());
+                match.setAmount(ingredient.getAmount());
+                ingredients.add(match);
+            }
+        }
+        // The managed list is changed in place, so only the rows which moved, changed, appeared or disappeared are written
+        existingRecipe.getIngredients().clear();
+        existingRecipe.getIngredients().addAll(ingredients);
+        return true;
+    }
+}
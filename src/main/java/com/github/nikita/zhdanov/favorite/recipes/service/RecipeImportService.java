@@ -0,0 +1,244 @@
+package com.github.nikita.zhdanov.favorite.recipes.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.execution.DatabaseBulkhead;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChange;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeImportResponse;
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import com.github.nikita.zhdanov.favorite.recipes.repository.IngredientDictionaryRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeChangeRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class RecipeImportService {
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private IngredientDictionaryRepository ingredientDictionaryRepository;
+    @Autowired
+    private RecipeChangeRepository recipeChangeRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private Validator validator;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private DatabaseBulkhead databaseBulkhead;
+
+    @Value("${recipes.import.transaction-size:1000}")
+    private int transactionSize;
+
+    // Iterator.next() may throw IllegalArgumentException for an item which can't be read, it is reported as failed
+    public RecipeImportResponse importRecipes(Iterator<Recipe> recipes) {
+        return importRecipes(recipes, false);
+    }
+
+    // Like importRecipes, but a failure of the database (see isDatabaseFailure) is thrown instead of being reported as
+    // failed items, so saves which were already accepted are written again instead of being dropped
+    public RecipeImportResponse importAccepted(Iterator<Recipe> recipes) {
+        return importRecipes(recipes, true);
+    }
+
+    private RecipeImportResponse importRecipes(Iterator<Recipe> recipes, boolean throwDatabaseFailures) {
+        var startedAt = System.nanoTime();
+        var errors = new ArrayList<RecipeImportResponse.ItemError>();
+        var chunk = new LinkedHashMap<Integer, Recipe>();
+        var imported = 0;
+
+        for (var index = 0; recipes.hasNext(); index++) {
+            Recipe recipe;
+            try {
+                recipe = recipes.next();
+            } catch (IllegalArgumentException e) {
+                errors.add(error(index, null, e.getMessage()));
+                continue;
+            }
+            var violation = validate(recipe);
+            if (violation != null) {
+                errors.add(error(index, recipe.getId(), violation));
+                continue;
+            }
+            chunk.put(index, recipe);
+            if (chunk.size() == transactionSize) {
+                imported += importChunk(chunk, errors, throwDatabaseFailures);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += importChunk(chunk, errors, throwDatabaseFailures);
+        }
+
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        return RecipeImportResponse.builder()
+                .imported(imported)
+                .failed(errors.size())
+                .errors(errors)
+                .elapsedMillis(elapsedMillis)
+                .recipesPerSecond(imported * 1000d / Math.max(elapsedMillis, 1))
+                .build();
+    }
+
+    public Iterator<Recipe> readNdjson(InputStream inputStream) {
+        var lines = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines()
+                .filter(line -> !line.isBlank())
+                .iterator();
+        var recipeReader = objectMapper.readerFor(Recipe.class);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return lines.hasNext();
+            }
+
+            @Override
+            public Recipe next() {
+                try {
+                    return recipeReader.readValue(lines.next());
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Malformed recipe: " + e.getOriginalMessage());
+                }
+            }
+        };
+    }
+
+    private String validate(Recipe recipe) {
+        if (recipe == null) {
+            return "Recipe is required";
+        }
+        if (recipe.getId() == null || recipe.getId().isBlank()) {
+            return "Id is required";
+        }
+        if (!Uuids.isUuid(recipe.getId())) {
+            return "Id must be a UUID";
+        }
+        recipe.setId(Uuids.canonical(recipe.getId()));
+        var violations = validator.validate(recipe);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "));
+    }
+
+    // The permit is taken for each chunk once it is read, so a slow upload doesn't hold one
+    private int importChunk(Map<Integer, Recipe> chunk, List<RecipeImportResponse.ItemError> errors,
+                            boolean throwDatabaseFailures) {
+        return databaseBulkhead.call(() -> writeChunk(chunk, errors, throwDatabaseFailures));
+    }
+
+    private int writeChunk(Map<Integer, Recipe> chunk, List<RecipeImportResponse.ItemError> errors,
+                           boolean throwDatabaseFailures) {
+        try {
+            var changedIds = transactionTemplate.execute(status -> upsert(chunk.values()));
+            changedIds.forEach(id -> eventPublisher.publishEvent(RecipeChangedEvent.local(id)));
+            return chunk.size();
+        } catch (RuntimeException e) {
+            if (throwDatabaseFailures && isDatabaseFailure(e)) {
+                throw e;
+            }
+            // Something in the chunk is broken: retry the recipes one by one to find out which ones
+            var imported = 0;
+            for (var entry : chunk.entrySet()) {
+                try {
+                    var changedIds = transactionTemplate.execute(status -> upsert(List.of(entry.getValue())));
+                    changedIds.forEach(id -> eventPublisher.publishEvent(RecipeChangedEvent.local(id)));
+                    imported++;
+                } catch (RuntimeException itemException) {
+                    if (throwDatabaseFailures && isDatabaseFailure(itemException)) {
+                        throw itemException;
+                    }
+                    var cause = NestedExceptionUtils.getMostSpecificCause(itemException);
+                    errors.add(error(entry.getKey(), entry.getValue().getId(), cause.getMessage()));
+                }
+            }
+            return imported;
+        }
+    }
+
+    // Returns the ids of the recipes which were written, the ones saved with the same content are not
+    private List<String> upsert(Collection<Recipe> recipes) {
+        // If a recipe is repeated the last one wins
+        var recipesById = new LinkedHashMap<String, Recipe>();
+        recipes.forEach(recipe -> recipesById.put(recipe.getId(), recipe));
+        var existingRecipes = recipeRepository.findAllWithIngredients(recipesById.keySet()).stream()
+                .collect(Collectors.toMap(Recipe::getId, Function.identity()));
+        ingredientDictionaryRepository.resolve(recipesById.values().stream()
+                .flatMap(recipe -> recipe.getIngredients().stream())
+                .collect(Collectors.toList()));
+
+        var changed = new ArrayList<Recipe>();
+        for (var recipe : recipesById.values()) {
+            var existingRecipe = existingRecipes.get(recipe.getId());
+            if (existingRecipe == null) {
+                RecipeChanges.prepareNew(recipe);
+                entityManager.persist(recipe);
+                changed.add(recipe);
+            } else if (RecipeChanges.apply(existingRecipe, recipe)) {
+                changed.add(existingRecipe);
+            }
+        }
+        // Written before the change feed entries, so the versions are the new ones and the feed is locked shortly
+        entityManager.flush();
+        recipeChangeRepository.record(changed.stream()
+                .map(recipe -> RecipeChange.builder()
+                        .recipeId(recipe.getId())
+                        .operation(RecipeChange.Operation.UPSERT)
+                        .version(recipe.getVersion())
+                        .build())
+                .collect(Collectors.toList()));
+        return changed.stream().map(Recipe::getId).collect(Collectors.toList());
+    }
+
+    // A failure of the database rather than of the recipes, such as a lost connection or a deadlock: the same recipes
+    // may be written once it recovers. Only the SQLSTATE classes 22 (data exception) and 23 (integrity constraint
+    // violation) and failures without an SQL error, such as an invalid entity, are errors of the recipes.
+    private static boolean isDatabaseFailure(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                var sqlState = ((SQLException) cause).getSQLState();
+                return sqlState == null || !(sqlState.startsWith("22") || sqlState.startsWith("23"));
+            }
+        }
+        return e instanceof TransactionException || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException || e instanceof DataAccessResourceFailureException;
+    }
+
+    private static RecipeImportResponse.ItemError error(int index, String id, String message) {
+        return RecipeImportResponse.ItemError.builder().index(index).id(id).message(message).build();
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.nikita.zhdanov.favorite.recipes.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only log of the recipes accepted by the write-behind queue, one JSON document per line. The log is a sequence
+ * of segment files next to the path (path.1, path.2, ...). Once the active segment reaches the segment size the next
+ * appends go to a new one, and the segments written to the database are deleted, so the log doesn't grow while the
+ * writer keeps up with a steady load.
+ * Positions are logical: they keep growing across segments, so a position always refers to the same entry.
+ * Appends and markWritten must be serialized by the caller, forcing to disk may be called concurrently.
+ */
+final class RecipeJournal implements Closeable {
+    private final Path path;
+    private final long segmentSize;
+    private final Object forceLock = new Object();
+    // Segments before the active one, oldest first
+    private final Deque<Segment> closedSegments = new ConcurrentLinkedDeque<>();
+    private long nextSegmentNumber = 1;
+    private Path activePath;
+    private FileChannel channel;
+    // Logical position of the beginning of the active segment
+    private long start;
+    // Logical position up to which the log is on disk
+    private long forced;
+
+    RecipeJournal(Path path, long segmentSize) throws IOException {
+        this.path = path;
+        this.segmentSize = segmentSize;
+        // The segments of the previous run are replayed, a journal without segments of an older version first
+        if (Files.exists(path)) {
+            closeSegment(path, Files.size(path));
+        }
+        var segmentName = Pattern.compile(Pattern.quote(path.getFileName().toString()) + "\\.(\\d+)");
+        List<Path> segments;
+        try (var files = Files.list(path.toAbsolutePath().getParent())) {
+            segments = files.filter(file -> segmentName.matcher(file.getFileName().toString()).matches())
+                    .sorted((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)))
+                    .collect(Collectors.toList());
+        }
+        for (var segment : segments) {
+            closeSegment(segment, Files.size(segment));
+            nextSegmentNumber = segmentNumber(segment) + 1;
+        }
+        forced = start;
+        openSegment();
+    }
+
+    // A line cut off by a crash in the middle of an append is skipped
+    List<Line> readAll() throws IOException {
+        var segments = new ArrayList<>(closedSegments);
+        segments.add(new Segment(activePath, start, end()));
+        var lines = new ArrayList<Line>();
+        for (var segment : segments) {
+            var bytes = Files.readAllBytes(segment.path);
+            var lineStart = 0;
+            for (var i = 0; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    var text = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                    lines.add(new Line(text, segment.start + i + 1));
+                    lineStart = i + 1;
+                }
+            }
+            // The part after the last line break is either empty or incomplete
+        }
+        return lines;
+    }
+
+    // Returns the position after the line, the line is on disk only after force(position)
+    long append(byte[] line) throws IOException {
+        if (channel.position() >= segmentSize) {
+            synchronized (forceLock) {
+                // The lines of a closed segment are on disk, so force() only needs to force the active one
+                var size = channel.position();
+                channel.force(false);
+                channel.close();
+                closeSegment(activePath, size);
+                forced = start;
+                openSegment();
+            }
+        }
+        var buffer = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return end();
+    }
+
+    // Callers waiting for the lock are usually covered by the force of the caller before them, like in a group commit
+    void force(long position) throws IOException {
+        synchronized (forceLock) {
+            if (forced >= position) {
+                return;
+            }
+            var end = end();
+            channel.force(false);
+            forced = end;
+        }
+    }
+
+    // Deletes the segments the entries of which are in the database up to the position, and empties the active one if
+    // nothing was appended after the position
+    void markWritten(long position) throws IOException {
+        while (!closedSegments.isEmpty() && closedSegments.peekFirst().end <= position) {
+            Files.deleteIfExists(closedSegments.removeFirst().path);
+        }
+        synchronized (forceLock) {
+            if (end() != position) {
+                return;
+            }
+            channel.truncate(0);
+            channel.position(0);
+            start = position;
+            // Entries before the position are in the database, they don't need to be on disk anymore
+            forced = Math.max(forced, position);
+        }
+    }
+
+    long size() throws IOException {
+        synchronized (forceLock) {
+            return closedSegments.stream().mapToLong(segment -> segment.end - segment.start).sum() + channel.size();
+        }
+    }
+
+    // Position after the last line, appends and markWritten must not run concurrently
+    long end() throws IOException {
+        return start + channel.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void closeSegment(Path segmentPath, long size) {
+        closedSegments.add(new Segment(segmentPath, start, start + size));
+        start += size;
+    }
+
+    private void openSegment() throws IOException {
+        activePath = path.resolveSibling(path.getFileName() + "." + nextSegmentNumber++);
+        channel = FileChannel.open(activePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static long segmentNumber(Path segment) {
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long start;
+        private final long end;
+
+        Segment(Path path, long start, long end) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    static final class Line {
+        private final String text;
+        private final long position;
+
+        Line(String text, long position) {
+            this.text = text;
+            this.position = position;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        // Position after the line
+        long getPosition() {
+            return position;
+        }
+    }
+}
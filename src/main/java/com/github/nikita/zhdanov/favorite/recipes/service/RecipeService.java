@@ -1,40 +1,274 @@
 package com.github.nikita.zhdanov.favorite.recipes.service;
 
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeSearchCache;
+import com.github.nikita.zhdanov.favorite.recipes.error.ExportTimedOut;
 import com.github.nikita.zhdanov.favorite.recipes.error.RecipeNotExists;
+import com.github.nikita.zhdanov.favorite.recipes.error.RecipeVersionMismatch;
+import com.github.nikita.zhdanov.favorite.recipes.event.RecipeChangedEvent;
+import com.github.nikita.zhdanov.favorite.recipes.execution.DatabaseBulkhead;
+import com.github.nikita.zhdanov.favorite.recipes.metrics.SearchMetrics;
 import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChange;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
 import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFilters;
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import com.github.nikita.zhdanov.favorite.recipes.repository.IngredientDictionaryRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeChangeRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeIngredientTermsRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeLegacyIdRepository;
 import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeSearchEngine;
 import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeSearchRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class RecipeService {
+    private static final int UNCONDITIONAL_CHANGE_ATTEMPTS = 3;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     @Autowired
     private RecipeRepository recipeRepository;
     @Autowired
     private RecipeSearchRepository recipeSearchRepository;
+    @Autowired
+    private IngredientDictionaryRepository ingredientDictionaryRepository;
+    @Autowired
+    private RecipeIngredientTermsRepository recipeIngredientTermsRepository;
+    @Autowired
+    private RecipeChangeRepository recipeChangeRepository;
+    @Autowired
+    private RecipeLegacyIdRepository recipeLegacyIdRepository;
+    @Autowired
+    private RecipeSearchEngine recipeSearchEngine;
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeSearchCache recipeSearchCache;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private SearchMetrics searchMetrics;
+    @Autowired
+    private DatabaseBulkhead databaseBulkhead;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${recipes.export.timeout:10m}")
+    private Duration exportTimeout;
 
     public void save(Recipe recipe) {
-        recipeRepository.save(recipe);
+        save(recipe, null);
+    }
+
+    // A recipe is saved only if its current version matches, when the expected version is given. On return the recipe
+    // has the version it was saved with.
+    public void save(Recipe recipe, LongPredicate expectedVersion) {
+        recipe.setId(Uuids.canonical(recipe.getId()));
+        var changed = withOptimisticLock(recipe.getId(), expectedVersion,
+                () -> transactionTemplate.execute(status -> {
+                    var written = write(recipe, expectedVersion);
+                    if (written) {
+                        recordChange(recipe.getId(), RecipeChange.Operation.UPSERT, recipe.getVersion());
+                    }
+                    return written;
+                }));
+        // Nothing was written for the same content, so there is nothing to invalidate
+        if (Boolean.TRUE.equals(changed)) {
+            eventPublisher.publishEvent(RecipeChangedEvent.local(recipe.getId()));
+        }
+    }
+
+    private boolean write(Recipe recipe, LongPredicate expectedVersion) {
+        // Names of an unchanged recipe are in the dictionary already, resolving them doesn't write anything
+        ingredientDictionaryRepository.resolve(recipe.getIngredients());
+        var existingRecipe = recipeRepository.findById(recipe.getId());
+        if (expectedVersion != null
+                && (existingRecipe.isEmpty() || !expectedVersion.test(existingRecipe.get().getVersion()))) {
+            throw new RecipeVersionMismatch(recipe.getId());
+        }
+        if (existingRecipe.isEmpty()) {
+            RecipeChanges.prepareNew(recipe);
+            entityManager.persist(recipe);
+            return true;
+        }
+        var changed = RecipeChanges.apply(existingRecipe.get(), recipe);
+        if (changed) {
+            // The version is incremented on flush
+            entityManager.flush();
+        }
+        recipe.setVersion(existingRecipe.get().getVersion());
+        return changed;
     }
 
     public void delete(String id) {
-        try {
-            recipeRepository.deleteById(id);
-        } catch (EmptyResultDataAccessException e) {
-            throw new RecipeNotExists(id);
+        delete(id, null);
+    }
+
+    public void delete(String id, LongPredicate expectedVersion) {
+        var recipeId = recipeId(id).orElseThrow(() -> new RecipeNotExists(id));
+        withOptimisticLock(recipeId, expectedVersion, () -> transactionTemplate.execute(status -> {
+            var recipe = recipeRepository.findById(recipeId).orElseThrow(() -> new RecipeNotExists(id));
+            if (expectedVersion != null && !expectedVersion.test(recipe.getVersion())) {
+                throw new RecipeVersionMismatch(recipeId);
+            }
+            recipeRepository.delete(recipe);
+            recordChange(recipeId, RecipeChange.Operation.DELETE, null);
+            return null;
+        }));
+        eventPublisher.publishEvent(RecipeChangedEvent.local(recipeId));
+    }
+
+    // Last in the transaction of the change: the entry keeps the next changes waiting until the transaction commits
+    private void recordChange(String recipeId, RecipeChange.Operation operation, Long version) {
+        recipeChangeRepository.record(List.of(RecipeChange.builder()
+                .recipeId(recipeId)
+                .operation(operation)
+                .version(version)
+                .build()));
+    }
+
+    // The version is checked again by the update itself, so no lock is taken between the read and the write.
+    // A conditional change fails on a concurrent one, an unconditional change is retried on top of it.
+    private <T> T withOptimisticLock(String id, LongPredicate expectedVersion, Supplier<T> change) {
+        for (var attempt = 1; ; attempt++) {
+            try {
+                return databaseBulkhead.call(change);
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (expectedVersion != null) {
+                    throw new RecipeVersionMismatch(id);
+                }
+                if (attempt == UNCONDITIONAL_CHANGE_ATTEMPTS) {
+                    throw e;
+                }
+            }
         }
     }
 
+    // Recipes found by the requested ids, the ones which are not cached are read in one query
+    public Map<String, Recipe> getAll(Collection<String> ids) {
+        var recipeIds = new HashMap<String, String>();
+        ids.forEach(id -> recipeId(id).ifPresent(recipeId -> recipeIds.put(id, recipeId)));
+        var recipes = recipeCache.getAll(new HashSet<>(recipeIds.values()),
+                missingIds -> databaseBulkhead.call(() -> readOnlyTransactionTemplate()
+                                .execute(status -> recipeRepository.findAllWithIngredients(missingIds))).stream()
+                        .collect(Collectors.toMap(Recipe::getId, Function.identity())));
+        var recipesByRequestedId = new HashMap<String, Recipe>();
+        recipeIds.forEach((id, recipeId) -> {
+            var recipe = recipes.get(recipeId);
+            if (recipe != null) {
+                recipesByRequestedId.put(id, recipe);
+            }
+        });
+        return recipesByRequestedId;
+    }
+
+    // Current version of the recipe, from the cached recipe if there is one, otherwise without reading the ingredients
+    public long getVersion(String id) {
+        var recipeId = recipeId(id).orElseThrow(() -> new RecipeNotExists(id));
+        var cachedRecipe = recipeCache.getIfPresent(recipeId);
+        if (cachedRecipe != null) {
+            return cachedRecipe.getVersion();
+        }
+        return databaseBulkhead.call(() -> readOnlyTransactionTemplate()
+                        .execute(status -> recipeRepository.findVersion(recipeId)))
+                .orElseThrow(() -> new RecipeNotExists(id));
+    }
+
     public Recipe get(String id) {
-        return recipeRepository.findById(id).orElseThrow(() -> new RecipeNotExists(id));
+        var recipeId = recipeId(id).orElseThrow(() -> new RecipeNotExists(id));
+        return recipeCache.get(recipeId, key -> databaseBulkhead.call(() -> recipeRepository.findById(key))
+                .orElseThrow(() -> new RecipeNotExists(key)));
+    }
+
+    // Canonical UUID of an id given to a lookup, a legacy id is resolved to the recipe it was given to. Anything else
+    // was never an id of a recipe.
+    private Optional<String> recipeId(String id) {
+        if (Uuids.isUuid(id)) {
+            return Optional.of(Uuids.canonical(id));
+        }
+        if (!Uuids.isLegacy(id)) {
+            return Optional.empty();
+        }
+        return Optional.of(databaseBulkhead.call(() -> recipeLegacyIdRepository.findRecipeId(id)));
     }
 
+    // Reads run in read-only transactions, which go to a read replica when there are some (see ReadReplicaConfig)
     public Collection<Recipe> search(RecipeFilters filters) {
-        return recipeSearchRepository.find(filters);
+        return searchMetrics.time(SearchMetrics.SERVICE, filters,
+                () -> databaseBulkhead.call(() -> readOnlyTransactionTemplate().execute(
+                        status -> findAllInOrder(recipeSearchCache.get(filters, recipeSearchEngine::findIds)))));
+    }
+
+    public RecipeFacets countFacets(RecipeFilters filters) {
+        return databaseBulkhead.call(() -> readOnlyTransactionTemplate().execute(
+                status -> recipeSearchEngine.countFacets(filters)));
+    }
+
+    // Taken before the response starts, so too many exports are rejected instead of answered with an empty stream
+    public DatabaseBulkhead.ExportPermit acquireExportPermit() {
+        return databaseBulkhead.acquireExport();
+    }
+
+    public void export(DatabaseBulkhead.ExportPermit permit, RecipeFilters filters, Consumer<Recipe> consumer) {
+        // The permit is held during the transaction, which holds a connection until the export ends or times out
+        permit.run(() -> {
+            var startedAt = System.nanoTime();
+            readOnlyTransactionTemplate().executeWithoutResult(status -> recipeSearchRepository.scroll(filters, recipe -> {
+                if (System.nanoTime() - startedAt > exportTimeout.toNanos()) {
+                    throw new ExportTimedOut(exportTimeout);
+                }
+                consumer.accept(recipe);
+            }));
+        });
+    }
+
+    // Backfill of recipes.ingredient_terms, see RecipeIngredientTermsRepository
+    public int rebuildIngredientTerms() {
+        var rebuilt = databaseBulkhead.call(recipeIngredientTermsRepository::rebuild);
+        recipeSearchCache.invalidateAll();
+        return rebuilt;
+    }
+
+    private TransactionTemplate readOnlyTransactionTemplate() {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
+    private List<Recipe> findAllInOrder(List<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        var recipes = recipeRepository.findAllWithIngredients(ids).stream()
+                .collect(Collectors.toMap(Recipe::getId, Function.identity()));
+        // Recipes removed in between the id and the recipe queries are skipped
+        return ids.stream().map(recipes::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 }
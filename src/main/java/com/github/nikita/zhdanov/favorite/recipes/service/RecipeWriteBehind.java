@@ -0,0 +1,342 @@
+package com.github.nikita.zhdanov.favorite.recipes.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nikita.zhdanov.favorite.recipes.error.WriteBehindPending;
+import com.github.nikita.zhdanov.favorite.recipes.error.WriteBehindQueueFull;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeImportResponse;
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
+import com.github.nikita.zhdanov.favorite.recipes.model.WriteBehindStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous saves of recipes. An accepted recipe is appended to a local journal and to a bounded queue, a single
+ * writer drains the queue and imports what it took at once: repeated saves of a recipe are coalesced and the recipes
+ * are committed in groups (see RecipeImportService). The writer replays the journal of the previous run before the
+ * queue, so accepted saves survive a restart. A failure of the database is retried until the saves are written, only
+ * the recipes the database rejects are dropped. Journal segments are deleted once their saves are written, and the
+ * journal is emptied whenever the writer catches up with the queue.
+ * Changes which are not deferred (deletes, conditional saves) wait for the accepted saves of their recipe first, so
+ * a save accepted before them can't be written after them.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "recipes.write-behind.enabled", havingValue = "true")
+public class RecipeWriteBehind implements SmartLifecycle, MeterBinder {
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+
+    @Autowired
+    private RecipeImportService recipeImportService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final BlockingQueue<Entry> queue;
+    private final int groupSize;
+    private final Path journalPath;
+    private final long journalSegmentSize;
+    // Appends to the journal and the queue are done together, so both have the same order
+    private final Object appendLock = new Object();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    // Journal position of the last accepted save of each recipe which is not written yet, notified on writtenLock
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final Object writtenLock = new Object();
+    private final Duration awaitTimeout;
+
+    private RecipeJournal journal;
+    private Thread writer;
+    private volatile boolean running;
+    // Oldest entry of the group being written and the size of the group
+    private volatile Entry writingSince;
+    private volatile int writing;
+    // Saves from the journal of the previous run which the writer didn't take yet
+    private volatile int replaying;
+
+    public RecipeWriteBehind(@Value("${recipes.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${recipes.write-behind.group-size:1000}") int groupSize,
+                             @Value("${recipes.write-behind.journal:write-behind.journal}") Path journalPath,
+                             @Value("${recipes.write-behind.journal-segment-size:16MB}") DataSize journalSegmentSize,
+                             @Value("${recipes.write-behind.await-timeout:5s}") Duration awaitTimeout) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.groupSize = groupSize;
+        this.journalPath = journalPath;
+        this.journalSegmentSize = journalSegmentSize.toBytes();
+        this.awaitTimeout = awaitTimeout;
+    }
+
+    // Returns once the recipe is on disk in the journal, it is written to the database later
+    public void enqueue(Recipe recipe) {
+        recipe.setId(Uuids.canonical(recipe.getId()));
+        if (!running) {
+            throw new IllegalStateException("Write-behind queue is stopped");
+        }
+        byte[] line;
+        try {
+            line = objectMapper.writeValueAsBytes(recipe);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+        try {
+            long position;
+            synchronized (appendLock) {
+                // Only the writer takes from the queue, so the entry fits once the capacity was checked
+                if (queue.remainingCapacity() == 0) {
+                    throw new WriteBehindQueueFull(queue.size());
+                }
+                position = journal.append(line);
+                // Before the writer can take the entry, so it is never marked pending after it was written
+                pending.put(recipe.getId(), position);
+                queue.add(new Entry(recipe, position, System.nanoTime()));
+            }
+            journal.force(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Waits until the saves of the recipe accepted so far are written, legacy ids are never accepted
+    public void awaitWritten(String id) {
+        if (!Uuids.isUuid(id)) {
+            return;
+        }
+        var recipeId = Uuids.canonical(id);
+        var deadline = System.nanoTime() + awaitTimeout.toNanos();
+        synchronized (writtenLock) {
+            while (pending.containsKey(recipeId)) {
+                var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new WriteBehindPending(recipeId, awaitTimeout);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(writtenLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new WriteBehindPending(recipeId, awaitTimeout);
+                }
+            }
+        }
+    }
+
+    public WriteBehindStatus status() {
+        try {
+            return WriteBehindStatus.builder()
+                    .queueDepth(queue.size() + writing + replaying)
+                    .queueCapacity(queue.size() + queue.remainingCapacity())
+                    .lagMillis(TimeUnit.NANOSECONDS.toMillis(lagNanos()))
+                    .written(written.get())
+                    .failed(failed.get())
+                    .journalBytes(journal.size())
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Age of the oldest save which is not in the database yet
+    private long lagNanos() {
+        var oldest = writingSince != null ? writingSince : queue.peek();
+        return oldest == null ? 0 : System.nanoTime() - oldest.acceptedAt;
+    }
+
+    @Override
+    public void start() {
+        List<Entry> replayed;
+        try {
+            journal = new RecipeJournal(journalPath, journalSegmentSize);
+            replayed = readJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        replayed.forEach(entry -> pending.put(entry.recipe.getId(), entry.journalPosition));
+        replaying = replayed.size();
+        running = true;
+        writer = new Thread(() -> drain(replayed), "recipe-write-behind");
+        // A writer stuck on an unavailable database doesn't keep the JVM alive, its saves are in the journal
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Saves accepted before a restart, the writer writes them before the ones accepted since
+    private List<Entry> readJournal() throws IOException {
+        var end = journal.end();
+        var acceptedAt = System.nanoTime();
+        var entries = new ArrayList<Entry>();
+        for (var line : journal.readAll()) {
+            try {
+                entries.add(new Entry(objectMapper.readValue(line.getText(), Recipe.class), line.getPosition(), acceptedAt));
+            } catch (JsonProcessingException e) {
+                log.warn("Skipped unreadable write-behind journal entry: {}", e.getOriginalMessage());
+            }
+        }
+        if (entries.isEmpty()) {
+            journal.markWritten(end);
+            return entries;
+        }
+        log.info("Replaying {} saves from the write-behind journal {}", entries.size(), journalPath);
+        // A line cut off after the last entry is deleted together with it
+        var last = entries.get(entries.size() - 1);
+        entries.set(entries.size() - 1, new Entry(last.recipe, end, acceptedAt));
+        return entries;
+    }
+
+    private void drain(List<Entry> replayed) {
+        try {
+            for (var from = 0; from < replayed.size(); from += groupSize) {
+                var group = replayed.subList(from, Math.min(from + groupSize, replayed.size()));
+                replaying -= group.size();
+                if (!writeGroup(group)) {
+                    return;
+                }
+            }
+            var group = new ArrayList<Entry>(groupSize);
+            while (running || !queue.isEmpty()) {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, groupSize - 1);
+                var written = writeGroup(group);
+                group.clear();
+                if (!written) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns false if the writer was stopped before the group was written
+    private boolean writeGroup(List<Entry> group) throws InterruptedException {
+        writingSince = group.get(0);
+        writing = group.size();
+        try {
+            return write(group);
+        } finally {
+            writingSince = null;
+            writing = 0;
+        }
+    }
+
+    private boolean write(List<Entry> group) throws InterruptedException {
+        var recipes = group.stream().map(entry -> entry.recipe).collect(Collectors.toList());
+        while (true) {
+            try {
+                // Recipes the database rejects are reported, a failure of the database itself is thrown
+                report(recipeImportService.importAccepted(recipes.iterator()));
+                break;
+            } catch (RuntimeException e) {
+                // The group and the ones after it stay in the journal, they are written on the next start
+                if (!running) {
+                    log.warn("Write-behind stopped with {} saves not written: {}", group.size(), e.getMessage());
+                    return false;
+                }
+                // Recipes committed by the failed attempt are the same on the next one, they are not written twice
+                log.warn("Writing {} saves failed, retrying in {}: {}", group.size(), RETRY_DELAY, e.getMessage());
+                Thread.sleep(RETRY_DELAY.toMillis());
+            }
+        }
+        // A later save of a recipe in the group keeps it pending
+        synchronized (writtenLock) {
+            group.forEach(entry -> pending.remove(entry.recipe.getId(), entry.journalPosition));
+            writtenLock.notifyAll();
+        }
+        try {
+            synchronized (appendLock) {
+                journal.markWritten(group.get(group.size() - 1).journalPosition);
+            }
+        } catch (IOException e) {
+            // The entries are written again on the next start, which doesn't change them
+            log.warn("Written part of the write-behind journal was not deleted: {}", e.getMessage());
+        }
+        return true;
+    }
+
+    private void report(RecipeImportResponse response) {
+        written.addAndGet(response.getImported());
+        failed.addAndGet(response.getFailed());
+        response.getErrors().forEach(error ->
+                log.warn("Accepted save of recipe {} was not written: {}", error.getId(), error.getMessage()));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(STOP_TIMEOUT.toMillis());
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Started before and stopped after the web server, which starts in the phase Integer.MAX_VALUE - 1
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("recipes.write_behind.queue.depth", this,
+                        writeBehind -> writeBehind.queue.size() + writeBehind.writing + writeBehind.replaying)
+                .description("Saves accepted by the write-behind queue and not written yet")
+                .register(registry);
+        TimeGauge.builder("recipes.write_behind.lag", this, TimeUnit.NANOSECONDS, RecipeWriteBehind::lagNanos)
+                .description("Age of the oldest save accepted by the write-behind queue and not written yet")
+                .register(registry);
+        FunctionCounter.builder("recipes.write_behind.written", written, AtomicLong::get)
+                .description("Saves written by the write-behind queue")
+                .register(registry);
+        FunctionCounter.builder("recipes.write_behind.failed", failed, AtomicLong::get)
+                .description("Saves accepted by the write-behind queue and rejected by the database")
+                .register(registry);
+    }
+
+    private static class Entry {
+        private final Recipe recipe;
+        private final long journalPosition;
+        private final long acceptedAt;
+
+        Entry(Recipe recipe, long journalPosition, long acceptedAt) {
+            this.recipe = recipe;
+            this.journalPosition = journalPosition;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+}
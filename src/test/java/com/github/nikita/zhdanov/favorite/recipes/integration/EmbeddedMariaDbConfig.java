@@ -44,7 +44,8 @@ public class EmbeddedMariaDbConfig {
                 .create()
                 .username("root")
                 .password("")
-                .url(config.getURL(databaseName))
+                // Same prepared statement settings as spring.datasource.hikari.data-source-properties
+                .url(config.getURL(databaseName) + "&useServerPrepStmts=true&cachePrepStmts=true")
                 .driverClassName(datasourceDriver)
                 .build();
     }
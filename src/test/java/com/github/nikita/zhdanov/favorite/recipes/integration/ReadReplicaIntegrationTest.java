@@ -0,0 +1,160 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.config.ReplicaRoutingDataSource;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import liquibase.integration.spring.SpringLiquibase;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.util.SocketUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.net.URI;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A second embedded database stands in for a replica: it has the schema but doesn't get the changes of the primary
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnableAutoConfiguration
+public class ReadReplicaIntegrationTest {
+    private static final String REPLICA_URL = startReplica();
+    // Nothing listens there, the replica is skipped
+    private static final String DOWN_REPLICA_URL =
+            "jdbc:mariadb://localhost:" + SocketUtils.findAvailableTcpPort() + "/test";
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("recipes.datasource.replicas.urls", () -> DOWN_REPLICA_URL + "," + REPLICA_URL);
+        registry.add("recipes.datasource.replicas.username", () -> "root");
+        registry.add("recipes.datasource.replicas.password", () -> "");
+    }
+
+    private static String startReplica() {
+        try {
+            var port = SocketUtils.findAvailableTcpPort();
+            var tempDirectory = FileUtils.getTempDirectory();
+            var db = DB.newEmbeddedDB(DBConfigurationBuilder.newBuilder()
+                    .setPort(port)
+                    .setBaseDir(new File(tempDirectory, "mariadb_" + port + "_base").getAbsolutePath())
+                    .setDataDir(new File(tempDirectory, "mariadb_" + port + "_data").getAbsolutePath())
+                    .build());
+            db.start();
+            db.createDB("test");
+            var url = "jdbc:mariadb://localhost:" + port + "/test";
+            var liquibase = new SpringLiquibase();
+            liquibase.setDataSource(new SimpleDriverDataSource(new org.mariadb.jdbc.Driver(), url, "root", ""));
+            liquibase.setChangeLog("classpath:/db/changelog/db.changelog-master.yaml");
+            liquibase.setResourceLoader(new DefaultResourceLoader());
+            liquibase.afterPropertiesSet();
+            return url;
+        } catch (ManagedProcessException | liquibase.exception.LiquibaseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void should_read_from_available_replica() throws SQLException {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        new JdbcTemplate(new SimpleDriverDataSource(new org.mariadb.jdbc.Driver(), REPLICA_URL, "root", ""))
+                .update("insert into recipes (id, name, instructions, vegetarian) values (unhex(?), ?, ?, ?)",
+                        recipeId.replace("-", ""), "Replica soup", "Only on the replica.", true);
+
+        // when
+        var recipe = restTemplate.getForObject(recipeUri(recipeId), Recipe.class);
+        var found = restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity("{\"recipeName\": {\"containsText\": \"replica\"}}", new HttpHeaders()),
+                RecipeSearchResponse.class);
+
+        // then
+        assertThat(recipe.getName()).isEqualTo("Replica soup");
+        assertThat(found.getRecipes()).extracting(Recipe::getId).containsExactly(recipeId);
+        // Both replicas were tried in turn by the two reads, the one which is down is skipped now
+        assertThat(dataSource.unwrap(ReplicaRoutingDataSource.class).availability())
+                .containsEntry(1, false)
+                .containsEntry(2, true);
+    }
+
+    @Test
+    public void should_read_own_writes_from_primary() {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        var put = restTemplate.exchange(recipeUri(recipeId), HttpMethod.PUT, createHttpEntity(
+                "{\"name\": \"Primary soup\", \"instructions\": \"Only on the primary.\", \"ingredients\": " +
+                        "[{\"name\": \"Potato\", \"amount\": 500}]}",
+                new HttpHeaders()), Void.class);
+        var cookie = put.getHeaders().getFirst(HttpHeaders.SET_COOKIE);
+
+        // when
+        var headers = new HttpHeaders();
+        headers.add(HttpHeaders.COOKIE, cookie.substring(0, cookie.indexOf(';')));
+        var ownRead = restTemplate.exchange(recipeUri(recipeId), HttpMethod.GET, new HttpEntity<>(headers),
+                Recipe.class);
+
+        // then
+        assertThat(cookie).startsWith("recipes-read-primary-until=");
+        assertThat(ownRead.getBody().getName()).isEqualTo("Primary soup");
+    }
+
+    @Test
+    public void should_not_read_writes_of_others_before_replica_has_them() {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        restTemplate.put(recipeUri(recipeId), createHttpEntity(
+                "{\"name\": \"Primary soup\", \"instructions\": \"Only on the primary.\", \"ingredients\": " +
+                        "[{\"name\": \"Potato\", \"amount\": 500}]}",
+                new HttpHeaders()));
+
+        // when
+        try {
+            restTemplate.getForObject(recipeUri(recipeId), Recipe.class);
+        } catch (HttpClientErrorException.NotFound e) {
+            // then
+            return;
+        }
+        throw new AssertionError("Recipe should be read from the replica, which doesn't have it");
+    }
+
+    private URI recipeUri(String recipeId) {
+        return URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId);
+    }
+
+    private static HttpEntity<String> createHttpEntity(String body, HttpHeaders headers) {
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.execution.DatabaseBulkhead;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"recipes.execution.database.permits=1", "recipes.execution.database.export-permits=1",
+                "recipes.execution.database.acquire-timeout=100ms"})
+@EnableAutoConfiguration
+public class RecipeBulkheadIntegrationTest {
+    private static final String RECIPE_ID = "00000000-0000-0000-0000-000000000001";
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+    @Autowired
+    private DatabaseBulkhead databaseBulkhead;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository.deleteAll();
+        recipeRepository.save(Recipe.builder()
+                .id(RECIPE_ID)
+                .name("Salad with tomato")
+                .ingredients(List.of(Ingredient.builder().name("Tomato").amount(500).build()))
+                .instructions("Cut the tomato into small pieces.")
+                .vegetarian(true)
+                .build());
+        recipeCache.invalidateAll();
+        recipeJsonCache.invalidateAll();
+    }
+
+    @Test
+    public void should_reject_requests_when_database_is_busy() throws Exception {
+        // given
+        var permitTaken = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = new Thread(() -> databaseBulkhead.run(() -> {
+            permitTaken.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertThat(permitTaken.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // when
+        try {
+            restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/" + RECIPE_ID), Recipe.class);
+        } catch (HttpServerErrorException.ServiceUnavailable e) {
+            // then
+            assertThat(e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+            assertThat(e.getResponseBodyAsString()).contains("Database is busy");
+            return;
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        throw new AssertionError("Expected ServiceUnavailable exception");
+    }
+
+    @Test
+    public void should_export_while_database_is_busy_with_other_requests() throws Exception {
+        // given
+        var permitTaken = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = new Thread(() -> databaseBulkhead.run(() -> {
+            permitTaken.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertThat(permitTaken.await(10, TimeUnit.SECONDS)).isTrue();
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+
+        // when
+        String export;
+        try {
+            export = restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                    new HttpEntity<>("{}", headers), String.class);
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        // then
+        assertThat(export).contains("Salad with tomato");
+    }
+
+    @Test
+    public void should_reject_export_when_too_many_exports_are_running() {
+        // given
+        var exportPermit = databaseBulkhead.acquireExport();
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+
+        // when
+        try {
+            restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                    new HttpEntity<>("{}", headers), String.class);
+        } catch (HttpServerErrorException.ServiceUnavailable e) {
+            // then
+            assertThat(e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+            return;
+        } finally {
+            exportPermit.release();
+        }
+        throw new AssertionError("Expected ServiceUnavailable exception");
+    }
+
+    @Test
+    public void should_serve_requests_after_permit_is_released() {
+        // when
+        var recipe = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/" + RECIPE_ID), Recipe.class);
+
+        // then
+        assertThat(recipe.getName()).isEqualTo("Salad with tomato");
+        assertThat(databaseBulkhead.availablePermits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,198 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChange;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChangesResponse;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeChangeRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnableAutoConfiguration
+public class RecipeChangeFeedIntegrationTest {
+    private static final String PIZZA_ID = "00000000-0000-0000-0000-000000000001";
+    private static final String TUNA_PIZZA_ID = "00000000-0000-0000-0000-000000000002";
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private RecipeChangeRepository recipeChangeRepository;
+
+    private long start;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository.deleteAll();
+        start = recipeChangeRepository.lastSequence();
+    }
+
+    @Test
+    public void should_list_changes_in_commit_order() {
+        // given
+        put(PIZZA_ID, "{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Mozzarella\", \"amount\": 500}]}");
+        put(TUNA_PIZZA_ID, "{\"name\": \"Tuna pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 500}]}");
+        put(PIZZA_ID, "{\"name\": \"Pizza mozzarella\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Mozzarella\", \"amount\": 500}]}");
+        // The same content again is not a change
+        put(PIZZA_ID, "{\"name\": \"Pizza mozzarella\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Mozzarella\", \"amount\": 500}]}");
+        restTemplate.delete(URI.create(recipeUri(TUNA_PIZZA_ID)));
+
+        // when
+        var response = changes("after=" + start);
+        var firstPage = changes("after=" + start + "&limit=2");
+        var secondPage = changes("after=" + firstPage.getLastSequence() + "&limit=2");
+
+        // then
+        assertThat(response.getChanges())
+                .extracting(RecipeChange::getRecipeId, RecipeChange::getOperation)
+                .containsExactly(
+                        tuple(PIZZA_ID, RecipeChange.Operation.UPSERT),
+                        tuple(TUNA_PIZZA_ID, RecipeChange.Operation.UPSERT),
+                        tuple(PIZZA_ID, RecipeChange.Operation.UPSERT),
+                        tuple(TUNA_PIZZA_ID, RecipeChange.Operation.DELETE));
+        assertThat(response.getChanges().get(2).getVersion()).isEqualTo(response.getChanges().get(0).getVersion() + 1);
+        assertThat(response.getChanges().get(3).getVersion()).isNull();
+        assertThat(response.getChanges()).extracting(RecipeChange::getSequence)
+                .containsExactly(start + 1, start + 2, start + 3, start + 4);
+        assertThat(response.getLastSequence()).isEqualTo(start + 4);
+        assertThat(firstPage.getChanges()).extracting(RecipeChange::getSequence).containsExactly(start + 1, start + 2);
+        assertThat(secondPage.getChanges()).extracting(RecipeChange::getSequence).containsExactly(start + 3, start + 4);
+    }
+
+    @Test
+    public void should_list_imported_recipes() {
+        // given
+        var request = "[\n" +
+                "  {\"id\": \"" + PIZZA_ID + "\", \"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Mozzarella\", \"amount\": 500}]},\n" +
+                "  {\"id\": \"" + TUNA_PIZZA_ID + "\", \"name\": \"Tuna pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 500}]}\n" +
+                "]";
+
+        // when
+        restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/bulk"),
+                createHttpEntity(request), String.class);
+        var response = changes("after=" + start);
+
+        // then
+        assertThat(response.getChanges())
+                .extracting(RecipeChange::getRecipeId, RecipeChange::getOperation)
+                .containsExactlyInAnyOrder(
+                        tuple(PIZZA_ID, RecipeChange.Operation.UPSERT),
+                        tuple(TUNA_PIZZA_ID, RecipeChange.Operation.UPSERT));
+        assertThat(response.getLastSequence()).isEqualTo(start + 2);
+    }
+
+    @Test
+    public void should_answer_waiting_request_on_change() throws Exception {
+        // given
+        var waiting = CompletableFuture.supplyAsync(() -> changes("after=" + start + "&wait=20"));
+        Thread.sleep(500);
+        var requestedAt = System.nanoTime();
+
+        // when
+        put(PIZZA_ID, "{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Mozzarella\", \"amount\": 500}]}");
+        var response = waiting.get(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(response.getChanges()).extracting(RecipeChange::getRecipeId).containsExactly(PIZZA_ID);
+        assertThat(System.nanoTime() - requestedAt).isLessThan(TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void should_answer_waiting_request_without_changes_after_wait() {
+        // when
+        var response = changes("after=" + start + "&wait=1");
+
+        // then
+        assertThat(response.getChanges()).isEmpty();
+        assertThat(response.getLastSequence()).isEqualTo(start);
+    }
+
+    @Test
+    public void should_compact_superseded_changes() {
+        // given
+        put(PIZZA_ID, "{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Mozzarella\", \"amount\": 500}]}");
+        put(PIZZA_ID, "{\"name\": \"Pizza mozzarella\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Mozzarella\", \"amount\": 500}]}");
+        put(TUNA_PIZZA_ID, "{\"name\": \"Tuna pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 500}]}");
+        restTemplate.delete(URI.create(recipeUri(TUNA_PIZZA_ID)));
+        var pizzaVersion = recipeRepository.findVersion(PIZZA_ID).orElseThrow();
+
+        // when
+        recipeChangeRepository.compact(Instant.now().plusSeconds(1));
+        var response = changes("after=" + start);
+
+        // then
+        assertThat(response.getChanges())
+                .extracting(RecipeChange::getRecipeId, RecipeChange::getOperation, RecipeChange::getVersion)
+                .containsExactly(
+                        tuple(PIZZA_ID, RecipeChange.Operation.UPSERT, pizzaVersion),
+                        tuple(TUNA_PIZZA_ID, RecipeChange.Operation.DELETE, null));
+        assertThat(response.getLastSequence()).isEqualTo(start + 4);
+    }
+
+    @Test
+    public void should_reject_invalid_limit() {
+        try {
+            // when
+            changes("limit=0");
+        } catch (HttpClientErrorException.BadRequest e) {
+            // then
+            return;
+        }
+        throw new AssertionError("Expected bad request");
+    }
+
+    private void put(String id, String recipe) {
+        restTemplate.put(URI.create(recipeUri(id)), createHttpEntity(recipe));
+    }
+
+    private RecipeChangesResponse changes(String query) {
+        return restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/changes?" + query),
+                RecipeChangesResponse.class);
+    }
+
+    private String recipeUri(String id) {
+        return "http://localhost:" + localServerPort + "/recipe/" + id;
+    }
+
+    private static HttpEntity<String> createHttpEntity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}
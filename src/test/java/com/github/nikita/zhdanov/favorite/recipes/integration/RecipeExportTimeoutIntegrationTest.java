@@ -0,0 +1,89 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "recipes.export.timeout=300ms")
+@EnableAutoConfiguration
+public class RecipeExportTimeoutIntegrationTest {
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Test
+    public void should_end_timed_out_export_with_error() {
+        // given
+        recipeRepository.deleteAll();
+        // Much more than the socket buffers hold, so the export waits for the client reading slowly
+        var instructions = "Cut the tomato into small pieces. ".repeat(3000);
+        recipeRepository.saveAll(IntStream.range(0, 200)
+                .mapToObj(i -> Recipe.builder()
+                        .name("Salad " + i)
+                        .ingredients(List.of(Ingredient.builder().name("Tomato").amount(500).build()))
+                        .instructions(instructions)
+                        .vegetarian(true)
+                        .build())
+                .collect(Collectors.toList()));
+
+        // when
+        var lines = new ArrayList<String>();
+        var error = restTemplate.execute(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                HttpMethod.POST,
+                request -> {
+                    request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    request.getHeaders().setAccept(List.of(MediaType.APPLICATION_NDJSON));
+                    request.getBody().write("{}".getBytes(StandardCharsets.UTF_8));
+                },
+                response -> {
+                    var reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                    lines.add(reader.readLine());
+                    try {
+                        Thread.sleep(1500);
+                        for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                            lines.add(line);
+                        }
+                    } catch (IOException e) {
+                        return e;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                });
+
+        // then
+        assertThat(error).isNotNull();
+        assertThat(lines).hasSizeLessThan(200);
+        assertThat(lines.get(lines.size() - 1)).contains("\"error\"").contains("Export was stopped after 300 ms");
+    }
+}
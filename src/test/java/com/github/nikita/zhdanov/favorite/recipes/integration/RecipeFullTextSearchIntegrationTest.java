@@ -0,0 +1,135 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeSearchCache;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "recipes.search.full-text.enabled=true")
+@EnableAutoConfiguration
+public class RecipeFullTextSearchIntegrationTest {
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+    @Autowired
+    private RecipeSearchCache recipeSearchCache;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository.deleteAll();
+        recipeCache.invalidateAll();
+        recipeJsonCache.invalidateAll();
+        recipeSearchCache.invalidateAll();
+        recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(Ingredient.builder().name("Mozzarella").amount(500).build()))
+                        .instructions("Put mozzarella on the dough and bake it in the oven.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .name("Tuna pizza")
+                        .ingredients(List.of(Ingredient.builder().name("Tuna").amount(500).build()))
+                        .instructions("Put tuna on the dough and bake it on the grill.")
+                        .vegetarian(false)
+                        .build(),
+                Recipe.builder()
+                        .name("Salad with tomato")
+                        .ingredients(List.of(Ingredient.builder().name("Tomato").amount(500).build()))
+                        .instructions("Cut the tomato into small pieces.")
+                        .vegetarian(true)
+                        .build()
+        ));
+    }
+
+    @Test
+    public void should_search_recipes_by_name_words() {
+        // when
+        var recipes = search("{\"recipeName\": {\"containsText\": \"PIZZA\"}}");
+
+        // then
+        assertThat(recipes.getRecipes()).extracting(Recipe::getName)
+                .containsExactlyInAnyOrder("Pizza mozzarella", "Tuna pizza");
+    }
+
+    @Test
+    public void should_keep_contains_semantics_for_phrases() {
+        // when
+        var matchingPhrase = search("{\"instructions\": {\"containsText\": \"dough and bake\"}}");
+        var shuffledWords = search("{\"instructions\": {\"containsText\": \"bake and dough\"}}");
+
+        // then
+        assertThat(matchingPhrase.getRecipes()).extracting(Recipe::getName)
+                .containsExactlyInAnyOrder("Pizza mozzarella", "Tuna pizza");
+        assertThat(shuffledWords.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_match_word_prefixes_through_full_text_index() {
+        // when
+        var wordPrefix = search("{\"recipeName\": {\"containsText\": \"mozza\"}}");
+        var wordMiddle = search("{\"recipeName\": {\"containsText\": \"izza\"}}");
+
+        // then
+        assertThat(wordPrefix.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+        assertThat(wordMiddle.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_search_reversed_by_instructions() {
+        // when
+        var recipes = search("{\"instructions\": {\"containsText\": \"dough\", \"reverse\": true}}");
+
+        // then
+        assertThat(recipes.getRecipes()).extracting(Recipe::getName).containsExactly("Salad with tomato");
+    }
+
+    @Test
+    public void should_fall_back_to_like_for_short_words() {
+        // when
+        var recipes = search("{\"recipeName\": {\"containsText\": \"zz\"}}");
+
+        // then
+        assertThat(recipes.getRecipes()).extracting(Recipe::getName)
+                .containsExactlyInAnyOrder("Pizza mozzarella", "Tuna pizza");
+    }
+
+    private RecipeSearchResponse search(String filters) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                new HttpEntity<>(filters, headers), RecipeSearchResponse.class);
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeSearchCache;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "recipes.search.ingredient-terms.enabled=true")
+@EnableAutoConfiguration
+public class RecipeIngredientTermsIntegrationTest {
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+    @Autowired
+    private RecipeSearchCache recipeSearchCache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository.deleteAll();
+        recipeCache.invalidateAll();
+        recipeJsonCache.invalidateAll();
+        recipeSearchCache.invalidateAll();
+        recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000001")
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Mozzarella").amount(500).build(),
+                                Ingredient.builder().name("Olive oil").amount(10).build()
+                        ))
+                        .instructions("Put mozzarella on the dough and bake it in the oven.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000002")
+                        .name("Tuna pizza")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Tuna").amount(500).build(),
+                                Ingredient.builder().name("Olive oil").amount(10).build()
+                        ))
+                        .instructions("Put tuna on the dough and bake it on the grill.")
+                        .vegetarian(false)
+                        .build()
+        ));
+    }
+
+    @Test
+    public void should_filter_ingredients_through_recipe_column() {
+        // when
+        var withOliveOil = search("{\"ingredientName\": {\"exactText\": \" OLIVE OIL\"}}");
+        var withoutTuna = search("{\"ingredientName\": {\"exactText\": \"tuna\", \"reverse\": true}, " +
+                "\"recipeName\": {\"containsText\": \"pizza\"}}");
+        var vegetarianWithTuna = search("{\"ingredientName\": {\"exactText\": \"Tuna\"}, \"vegetarian\": true}");
+
+        // then
+        assertThat(withOliveOil.getRecipes()).extracting(Recipe::getName)
+                .containsExactly("Pizza mozzarella", "Tuna pizza");
+        assertThat(withoutTuna.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+        assertThat(vegetarianWithTuna.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_filter_ingredient_lists_with_one_match() {
+        // when
+        var withOliveOilAndTuna = search("{\"includeIngredients\": [\"olive oil\", \"TUNA\"]}");
+        var withoutTuna = search("{\"includeIngredients\": [\"Olive oil\"], \"excludeIngredients\": [\"Tuna\"]}");
+        var withoutTunaOrMozzarella = search("{\"excludeIngredients\": [\"Tuna\", \"Mozzarella\", \"Saffron\"]}");
+
+        // then
+        assertThat(withOliveOilAndTuna.getRecipes()).extracting(Recipe::getName).containsExactly("Tuna pizza");
+        assertThat(withoutTuna.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+        assertThat(withoutTunaOrMozzarella.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_keep_ingredient_terms_current_on_save() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/00000000-0000-0000-0000-000000000002");
+
+        // when
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Tuna pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 500}, {\"name\": \"Basil\", \"amount\": 5}]}"));
+        var withBasil = search("{\"ingredientName\": {\"exactText\": \"basil\"}}");
+        var withOliveOil = search("{\"ingredientName\": {\"exactText\": \"olive oil\"}}");
+
+        // then
+        assertThat(withBasil.getRecipes()).extracting(Recipe::getName).containsExactly("Tuna pizza");
+        assertThat(withOliveOil.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+    }
+
+    @Test
+    public void should_rebuild_ingredient_terms() {
+        // given
+        jdbcTemplate.update("update recipes set ingredient_terms = null");
+        var beforeRebuild = search("{\"ingredientName\": {\"exactText\": \"Tuna\"}}");
+
+        // when
+        var rebuilt = restTemplate.postForObject(
+                URI.create("http://localhost:" + localServerPort + "/ingredient-terms/rebuild"), null, Map.class);
+        var withTuna = search("{\"ingredientName\": {\"exactText\": \"Tuna\"}}");
+
+        // then
+        assertThat(beforeRebuild.getRecipes()).isEmpty();
+        assertThat(rebuilt).containsEntry("recipes", 2);
+        assertThat(withTuna.getRecipes()).extracting(Recipe::getName).containsExactly("Tuna pizza");
+    }
+
+    private RecipeSearchResponse search(String filters) {
+        return restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity(filters), RecipeSearchResponse.class);
+    }
+
+    private static HttpEntity<String> createHttpEntity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}
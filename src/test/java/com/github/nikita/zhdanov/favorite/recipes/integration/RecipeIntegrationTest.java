@@ -1,36 +1,57 @@
 package com.github.nikita.zhdanov.favorite.recipes.integration;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeSearchCache;
 import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
 import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeBatchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeImportResponse;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
 import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.model.Uuids;
 import com.github.nikita.zhdanov.favorite.recipes.repository.IngredientRepository;
 import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
         webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @EnableAutoConfiguration
+@AutoConfigureMetrics
 public class RecipeIntegrationTest {
     private final RestTemplate restTemplate = new RestTemplate();
 
@@ -40,11 +61,24 @@ public class RecipeIntegrationTest {
     @Autowired
     private RecipeRepository recipeRepository;
     @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+    @Autowired
+    private RecipeSearchCache recipeSearchCache;
+    @Autowired
     private IngredientRepository ingredientRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @BeforeEach
     public void setUp() {
         recipeRepository.deleteAll();
+        recipeCache.invalidateAll();
+        recipeJsonCache.invalidateAll();
+        recipeSearchCache.invalidateAll();
     }
 
     @Test
@@ -535,6 +569,868 @@ public class RecipeIntegrationTest {
         assertThat(recipes.getPageSize()).isEqualTo(100);
     }
 
+    @Test
+    public void should_page_search_results_with_continuation_token() {
+        // given
+        var existingRecipes = recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(Ingredient.builder().name("Mozzarella").amount(500).build()))
+                        .instructions("Put mozzarella on the dough and bake it.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .name("Tuna pizza")
+                        .ingredients(List.of(Ingredient.builder().name("Tuna").amount(500).build()))
+                        .instructions("Put tuna on the dough and bake it.")
+                        .vegetarian(false)
+                        .build(),
+                Recipe.builder()
+                        .name("Pizza marinara")
+                        .ingredients(List.of(Ingredient.builder().name("Tomato").amount(500).build()))
+                        .instructions("Put tomatoes on the dough and bake it.")
+                        .vegetarian(true)
+                        .build()
+        ));
+        var searchUri = URI.create("http://localhost:" + localServerPort + "/recipe/search");
+
+        // when
+        var firstPage = restTemplate.postForObject(searchUri,
+                createHttpEntity("{\"recipeName\": {\"containsText\": \"pizza\"}, \"pageSize\": 2}"),
+                RecipeSearchResponse.class);
+        var secondPage = restTemplate.postForObject(searchUri,
+                createHttpEntity("{\"recipeName\": {\"containsText\": \"pizza\"}, \"pageSize\": 2, " +
+                        "\"continuationToken\": \"" + firstPage.getContinuationToken() + "\"}"),
+                RecipeSearchResponse.class);
+
+        // then
+        assertThat(firstPage.getRecipes()).hasSize(2);
+        assertThat(firstPage.getContinuationToken()).isNotNull();
+        assertThat(secondPage.getRecipes()).hasSize(1);
+        assertThat(secondPage.getContinuationToken()).isNull();
+        var expectedPizzas = StreamSupport.stream(existingRecipes.spliterator(), false).toArray(Recipe[]::new);
+        var foundPizzas = new ArrayList<>(firstPage.getRecipes());
+        foundPizzas.addAll(secondPage.getRecipes());
+        assertThat(foundPizzas).containsExactlyInAnyOrder(expectedPizzas);
+    }
+
+    @Test
+    public void should_count_all_matching_recipes_only_when_requested() {
+        // given
+        recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(Ingredient.builder().name("Mozzarella").amount(500).build(),
+                                Ingredient.builder().name("Tomato").amount(200).build()))
+                        .instructions("Put mozzarella on the dough and bake it.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .name("Tuna pizza")
+                        .ingredients(List.of(Ingredient.builder().name("Tuna").amount(500).build(),
+                                Ingredient.builder().name("Tomato").amount(200).build(),
+                                Ingredient.builder().name("Mozzarella").amount(100).build()))
+                        .instructions("Put tuna on the dough and bake it.")
+                        .vegetarian(false)
+                        .build(),
+                Recipe.builder()
+                        .name("Pizza marinara")
+                        .ingredients(List.of(Ingredient.builder().name("Tomato").amount(500).build(),
+                                Ingredient.builder().name("Garlic").amount(10).build()))
+                        .instructions("Put tomatoes on the dough and bake it.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .name("Salad")
+                        .ingredients(List.of(Ingredient.builder().name("Cucumber").amount(500).build()))
+                        .instructions("Cut the cucumber.")
+                        .vegetarian(true)
+                        .build()
+        ));
+        var searchUri = URI.create("http://localhost:" + localServerPort + "/recipe/search");
+
+        // when
+        var withCounts = restTemplate.postForObject(searchUri, createHttpEntity("{\"recipeName\": " +
+                "{\"containsText\": \"pizza\"}, \"pageSize\": 1, \"includeCounts\": true, \"topIngredients\": 2}"),
+                RecipeSearchResponse.class);
+        var withoutCounts = restTemplate.postForObject(searchUri,
+                createHttpEntity("{\"recipeName\": {\"containsText\": \"pizza\"}, \"pageSize\": 1}"),
+                RecipeSearchResponse.class);
+
+        // then
+        assertThat(withCounts.getRecipes()).hasSize(1);
+        assertThat(withCounts.getTotalNumberOfRecipes()).isEqualTo(3);
+        assertThat(withCounts.getFacets().getVegetarian()).isEqualTo(2);
+        assertThat(withCounts.getFacets().getNonVegetarian()).isEqualTo(1);
+        assertThat(withCounts.getFacets().getIngredients())
+                .extracting(RecipeFacets.IngredientCount::getName, RecipeFacets.IngredientCount::getRecipes)
+                .containsExactly(tuple("Tomato", 3L), tuple("Mozzarella", 2L));
+        assertThat(withoutCounts.getTotalNumberOfRecipes()).isNull();
+        assertThat(withoutCounts.getFacets()).isNull();
+    }
+
+    @Test
+    public void should_reject_continuation_token_issued_for_other_filters() {
+        // given
+        recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(Ingredient.builder().name("Mozzarella").amount(500).build()))
+                        .instructions("Put mozzarella on the dough and bake it.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .name("Tuna pizza")
+                        .ingredients(List.of(Ingredient.builder().name("Tuna").amount(500).build()))
+                        .instructions("Put tuna on the dough and bake it.")
+                        .vegetarian(false)
+                        .build()
+        ));
+        var searchUri = URI.create("http://localhost:" + localServerPort + "/recipe/search");
+        var firstPage = restTemplate.postForObject(searchUri, createHttpEntity("{\"pageSize\": 1}"),
+                RecipeSearchResponse.class);
+
+        // when
+        try {
+            restTemplate.postForObject(searchUri, createHttpEntity("{\"vegetarian\": true, \"pageSize\": 1, " +
+                    "\"continuationToken\": \"" + firstPage.getContinuationToken() + "\"}"), RecipeSearchResponse.class);
+        } catch (HttpClientErrorException.BadRequest e) {
+            // then
+            return;
+        }
+        throw new AssertionError("Expected BadRequest exception");
+    }
+
+    @Test
+    public void should_search_with_constant_number_of_statements_regardless_of_page_size() {
+        // given
+        recipeRepository.saveAll(IntStream.range(0, 10)
+                .mapToObj(i -> Recipe.builder()
+                        .name("Pizza " + i)
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Tomato").amount(500).build(),
+                                Ingredient.builder().name("Dough").amount(500).build()
+                        ))
+                        .instructions("Put the pizza into the oven and cook for 20 minutes.")
+                        .vegetarian(true)
+                        .build())
+                .collect(Collectors.toList()));
+        var searchUri = URI.create("http://localhost:" + localServerPort + "/recipe/search");
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        // when
+        statistics.clear();
+        var smallPage = restTemplate.postForObject(searchUri, createHttpEntity("{\"pageSize\": 2}"),
+                RecipeSearchResponse.class);
+        var smallPageStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        var largePage = restTemplate.postForObject(searchUri, createHttpEntity("{\"pageSize\": 10}"),
+                RecipeSearchResponse.class);
+        var largePageStatements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+
+        // then
+        assertThat(smallPage.getRecipes()).hasSize(2);
+        assertThat(largePage.getRecipes()).hasSize(10).allSatisfy(recipe -> assertThat(recipe.getIngredients()).hasSize(2));
+        assertThat(largePageStatements).isEqualTo(smallPageStatements).isEqualTo(2);
+    }
+
+    @Test
+    public void should_stream_search_results_as_ndjson() throws Exception {
+        // given
+        var existingRecipes = recipeRepository.saveAll(IntStream.range(0, 5)
+                .mapToObj(i -> Recipe.builder()
+                        .name("Pizza " + i)
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Tomato").amount(500).build(),
+                                Ingredient.builder().name(i % 2 == 0 ? "Tuna" : "Dough").amount(500).build()
+                        ))
+                        .instructions("Put the pizza into the oven and cook for 20 minutes.")
+                        .vegetarian(i % 2 != 0)
+                        .build())
+                .collect(Collectors.toList()));
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        var filters = "{\"ingredientName\": {\"exactText\": \"tuna\"}, \"pageSize\": 1}";
+
+        // when
+        var response = restTemplate.exchange(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                HttpMethod.POST, new HttpEntity<>(filters, headers), String.class);
+
+        // then
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        var recipeReader = new ObjectMapper().readerFor(Recipe.class);
+        var streamedRecipes = new ArrayList<Recipe>();
+        for (var line : response.getBody().split("\n")) {
+            streamedRecipes.add(recipeReader.readValue(line));
+        }
+        var expectedRecipes = StreamSupport.stream(existingRecipes.spliterator(), false)
+                .filter(recipe -> !recipe.isVegetarian())
+                .toArray(Recipe[]::new);
+        assertThat(streamedRecipes).containsExactlyInAnyOrder(expectedRecipes);
+    }
+
+    @Test
+    public void should_import_recipes_in_bulk() {
+        // given
+        var existingRecipe = recipeRepository.save(Recipe.builder()
+                .name("Pizza mozzarella")
+                .ingredients(List.of(Ingredient.builder().name("Mozzarella").amount(500).build()))
+                .instructions("Put mozzarella on the dough and bake it.")
+                .vegetarian(true)
+                .build());
+        var newRecipeId = UUID.randomUUID().toString();
+        var request = "[\n" +
+                "  {\"id\": \"" + existingRecipe.getId() + "\", \"name\": \"Pizza margarita\", " +
+                "\"instructions\": \"Bake it.\", \"vegetarian\": true, " +
+                "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 100}, {\"name\": \"Basil\", \"amount\": 10}]},\n" +
+                "  {\"id\": \"" + newRecipeId + "\", \"name\": \"Tuna pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 100}]},\n" +
+                "  {\"id\": \"" + UUID.randomUUID() + "\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 100}]}\n" +
+                "]";
+
+        // when
+        var response = restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/bulk"),
+                createHttpEntity(request), RecipeImportResponse.class);
+
+        // then
+        assertThat(response.getImported()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getErrors()).extracting(RecipeImportResponse.ItemError::getIndex).containsExactly(2);
+        var updatedRecipe = recipeRepository.findById(existingRecipe.getId()).orElseThrow();
+        assertThat(updatedRecipe.getName()).isEqualTo("Pizza margarita");
+        assertThat(updatedRecipe.getIngredients()).extracting(Ingredient::getName).containsExactlyInAnyOrder("Tomato", "Basil");
+        assertThat(recipeRepository.findById(newRecipeId)).isPresent();
+        var replacedIngredientId = existingRecipe.getIngredients().iterator().next().getId();
+        assertThat(ingredientRepository.findById(replacedIngredientId)).isEmpty();
+    }
+
+    @Test
+    public void should_import_recipes_in_bulk_from_ndjson() {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        var request = "{\"id\": \"" + recipeId + "\", \"name\": \"Tuna pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 100}]}\n" +
+                "{\"id\": \"broken\n";
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+
+        // when
+        var response = restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/bulk"),
+                new HttpEntity<>(request, headers), RecipeImportResponse.class);
+
+        // then
+        assertThat(response.getImported()).isEqualTo(1);
+        assertThat(response.getErrors()).extracting(RecipeImportResponse.ItemError::getIndex).containsExactly(1);
+        assertThat(recipeRepository.findById(recipeId)).isPresent();
+    }
+
+    @Test
+    public void should_import_new_recipes_of_chunk_with_broken_recipe() {
+        // given
+        jdbcTemplate.execute("create trigger reject_broken_recipe before insert on recipes for each row " +
+                "if new.name = 'Broken pizza' then signal sqlstate '45000' set message_text = 'Broken recipe'; end if");
+        var recipeIds = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        var request = recipeIds.stream()
+                .map(id -> "{\"id\": \"" + id + "\", \"name\": \"" + (id.equals(recipeIds.get(1)) ? "Broken pizza" : "Pizza") +
+                        "\", \"instructions\": \"Bake it.\", \"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}")
+                .collect(Collectors.joining(",", "[", "]"));
+
+        // when
+        RecipeImportResponse response;
+        try {
+            response = restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/bulk"),
+                    createHttpEntity(request), RecipeImportResponse.class);
+        } finally {
+            jdbcTemplate.execute("drop trigger reject_broken_recipe");
+        }
+
+        // then
+        assertThat(response.getImported()).isEqualTo(2);
+        assertThat(response.getErrors()).extracting(RecipeImportResponse.ItemError::getIndex).containsExactly(1);
+        assertThat(recipeRepository.findById(recipeIds.get(0))).isPresent();
+        assertThat(recipeRepository.findById(recipeIds.get(1))).isEmpty();
+        assertThat(recipeRepository.findById(recipeIds.get(2))).isPresent();
+    }
+
+    @Test
+    public void should_keep_cached_recipes_which_import_did_not_change() {
+        // given
+        var pizzaId = UUID.randomUUID().toString();
+        var soupId = UUID.randomUUID().toString();
+        var pizza = "{\"id\": \"" + pizzaId + "\", \"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}";
+        var bulkUri = URI.create("http://localhost:" + localServerPort + "/recipe/bulk");
+        restTemplate.postForObject(bulkUri, createHttpEntity("[" + pizza + ", {\"id\": \"" + soupId + "\", " +
+                "\"name\": \"Soup\", \"instructions\": \"Boil it.\", \"ingredients\": [{\"name\": \"Water\", \"amount\": 500}]}]"),
+                RecipeImportResponse.class);
+        restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/" + pizzaId), Recipe.class);
+        restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/" + soupId), Recipe.class);
+        var hitsBefore = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("recipes").path("hits").asLong();
+
+        // when
+        restTemplate.postForObject(bulkUri, createHttpEntity("[" + pizza + ", {\"id\": \"" + soupId + "\", " +
+                "\"name\": \"Tomato soup\", \"instructions\": \"Boil it.\", \"ingredients\": [{\"name\": \"Water\", \"amount\": 500}]}]"),
+                RecipeImportResponse.class);
+        restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/" + pizzaId), Recipe.class);
+        var soup = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/" + soupId), Recipe.class);
+
+        // then
+        var hitsAfter = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("recipes").path("hits").asLong();
+        assertThat(soup.getName()).isEqualTo("Tomato soup");
+        assertThat(hitsAfter - hitsBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void should_store_ids_as_binary_uuids() {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+
+        // when
+        restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId.toUpperCase()),
+                createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                        "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}"));
+        var recipe = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId),
+                Recipe.class);
+
+        // then
+        assertThat(recipe.getId()).isEqualTo(recipeId);
+        assertThat(UUID.fromString(recipe.getIngredients().get(0).getId()).version()).isEqualTo(7);
+        assertThat(jdbcTemplate.queryForObject("select length(id) from recipes", Integer.class)).isEqualTo(16);
+    }
+
+    @Test
+    public void should_address_recipe_by_legacy_id_in_any_case() {
+        // given
+        var recipeId = Uuids.fromLegacy("Legacy-Pizza");
+        recipeRepository.save(Recipe.builder()
+                .id(recipeId)
+                .name("Pizza")
+                .ingredients(List.of(Ingredient.builder().name("Dough").amount(500).build()))
+                .instructions("Bake it.")
+                .build());
+        jdbcTemplate.update("insert into recipe_legacy_ids (legacy_id, recipe_id) " +
+                "values ('Legacy-Pizza', unhex(md5('Legacy-Pizza')))");
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/legacy-pizza");
+
+        try {
+            // when
+            var recipe = restTemplate.getForObject(recipeUri, Recipe.class);
+            var batch = restTemplate.getForObject(
+                    URI.create("http://localhost:" + localServerPort + "/recipe/batch?ids=LEGACY-PIZZA"),
+                    RecipeBatchResponse.class);
+            restTemplate.delete(recipeUri);
+
+            // then
+            assertThat(recipe.getId()).isEqualTo(recipeId);
+            assertThat(batch.getRecipes()).extracting(RecipeBatchResponse.Item::getId, item -> item.getRecipe().getId())
+                    .containsExactly(tuple("LEGACY-PIZZA", recipeId));
+            assertThat(recipeRepository.findById(recipeId)).isEmpty();
+        } finally {
+            jdbcTemplate.update("delete from recipe_legacy_ids");
+        }
+    }
+
+    @Test
+    public void should_not_add_recipe_with_non_uuid_id() {
+        // given
+        var request = "{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}";
+
+        // when
+        try {
+            restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/pizza"), createHttpEntity(request));
+        } catch (HttpClientErrorException.BadRequest e) {
+            // then
+            return;
+        }
+
+        throw new RuntimeException("Expected exception");
+    }
+
+    @Test
+    public void should_expose_search_metrics_tagged_by_filters() {
+        // given
+        var filters = "{\"ingredientName\": {\"exactText\": \"tomato\", \"reverse\": true}, \"vegetarian\": true}";
+
+        // when
+        restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity(filters), RecipeSearchResponse.class);
+        var metrics = restTemplate.getForObject(
+                URI.create("http://localhost:" + localServerPort + "/actuator/prometheus"), String.class);
+
+        // then
+        var tags = "ingredient=\"true\",instructions=\"false\",layer=\"%s\",name=\"false\",outcome=\"SUCCESS\"," +
+                "reverse=\"true\",vegetarian=\"true\",";
+        assertThat(metrics)
+                .contains("recipes_search_seconds_count{" + String.format(tags, "controller") + "}")
+                .contains("recipes_search_seconds_count{" + String.format(tags, "service") + "}")
+                .contains("recipes_search_seconds_count{" + String.format(tags, "repository") + "}")
+                .contains("recipes_search_statements_count{")
+                .contains("recipes_search_rows_count{")
+                .contains("hikaricp_connections_acquire_seconds_count{");
+    }
+
+    @Test
+    public void should_expose_metrics_of_failed_searches() {
+        // given
+        var filters = "{\"recipeName\": {\"containsText\": \"pizza\"}, \"continuationToken\": \"invalid\"}";
+
+        // when
+        try {
+            restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                    createHttpEntity(filters), RecipeSearchResponse.class);
+            throw new RuntimeException("Expected exception");
+        } catch (HttpClientErrorException.BadRequest e) {
+            // expected
+        }
+        var metrics = restTemplate.getForObject(
+                URI.create("http://localhost:" + localServerPort + "/actuator/prometheus"), String.class);
+
+        // then
+        var tags = "ingredient=\"false\",instructions=\"false\",%sname=\"true\"," +
+                "outcome=\"CLIENT_ERROR\",reverse=\"false\",vegetarian=\"false\",";
+        assertThat(metrics)
+                .contains("recipes_search_seconds_count{" + String.format(tags, "layer=\"controller\",") + "} 1.0")
+                .contains("recipes_search_rows_count{" + String.format(tags, "") + "} 1.0");
+    }
+
+    @Test
+    public void should_share_ingredient_names_through_dictionary() {
+        // given
+        var pizzaUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+        var saladUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+
+        // when
+        restTemplate.put(pizzaUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 100}, {\"name\": \"Dough\", \"amount\": 500}]}"));
+        restTemplate.put(saladUri, createHttpEntity("{\"name\": \"Salad\", \"instructions\": \"Cut it.\", " +
+                "\"ingredients\": [{\"name\": \" TOMATO \", \"amount\": 200}]}"));
+        var recipes = restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity("{\"ingredientName\": {\"exactText\": \"tomato\"}}"), RecipeSearchResponse.class);
+
+        // then
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from ingredient_dictionary where normalized_name = 'tomato'", Integer.class)).isEqualTo(1);
+        assertThat(recipes.getRecipes()).extracting(Recipe::getName).containsExactlyInAnyOrder("Pizza", "Salad");
+        assertThat(recipes.getRecipes()).flatExtracting(Recipe::getIngredients)
+                .extracting(Ingredient::getName, Ingredient::getAmount)
+                .contains(tuple("Tomato", 100), tuple("TOMATO", 200));
+    }
+
+    @Test
+    public void should_share_dictionary_entry_of_names_differing_in_accents() {
+        // given
+        var tartUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+        var soupUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+
+        // when
+        restTemplate.put(tartUri, createHttpEntity("{\"name\": \"Tart\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Crème fraîche\", \"amount\": 100}]}"));
+        restTemplate.put(soupUri, createHttpEntity("{\"name\": \"Soup\", \"instructions\": \"Boil it.\", " +
+                "\"ingredients\": [{\"name\": \"creme fraiche\", \"amount\": 50}]}"));
+        var recipes = restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity("{\"ingredientName\": {\"exactText\": \"CREME FRAICHE\"}}"), RecipeSearchResponse.class);
+
+        // then
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from ingredient_dictionary where normalized_name = 'creme fraiche'", Integer.class))
+                .isEqualTo(1);
+        assertThat(recipes.getRecipes()).extracting(Recipe::getName).containsExactlyInAnyOrder("Tart", "Soup");
+        assertThat(recipes.getRecipes()).flatExtracting(Recipe::getIngredients).extracting(Ingredient::getName)
+                .containsExactlyInAnyOrder("Crème fraîche", "creme fraiche");
+    }
+
+    @Test
+    public void should_serve_cached_recipe_until_it_is_updated() {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId);
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 100}]}"));
+        var hitsBefore = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("recipes").path("hits").asLong();
+
+        // when
+        restTemplate.getForObject(recipeUri, Recipe.class);
+        var cachedRecipe = restTemplate.getForObject(recipeUri, Recipe.class);
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza margarita\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 100}]}"));
+        var updatedRecipe = restTemplate.getForObject(recipeUri, Recipe.class);
+
+        // then
+        var hitsAfter = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("recipes").path("hits").asLong();
+        assertThat(cachedRecipe.getName()).isEqualTo("Pizza");
+        assertThat(updatedRecipe.getName()).isEqualTo("Pizza margarita");
+        assertThat(hitsAfter - hitsBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void should_reuse_cached_search_results_until_a_recipe_changes() {
+        // given
+        var searchUri = URI.create("http://localhost:" + localServerPort + "/recipe/search");
+        var filters = "{\"recipeName\": {\"containsText\": \"Pizza\"}, \"vegetarian\": true}";
+        var sameFilters = "{\"vegetarian\": true, \"recipeName\": {\"containsText\": \"PIZZA\", \"reverse\": false}}";
+        restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID()),
+                createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", \"vegetarian\": true, " +
+                        "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 100}]}"));
+        var statisticsBefore = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("searches");
+
+        // when
+        var firstSearch = restTemplate.postForObject(searchUri, createHttpEntity(filters), RecipeSearchResponse.class);
+        var cachedSearch = restTemplate.postForObject(searchUri, createHttpEntity(sameFilters), RecipeSearchResponse.class);
+        restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID()),
+                createHttpEntity("{\"name\": \"Pizza margarita\", \"instructions\": \"Bake it.\", \"vegetarian\": true, " +
+                        "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 100}]}"));
+        var searchAfterChange = restTemplate.postForObject(searchUri, createHttpEntity(filters), RecipeSearchResponse.class);
+
+        // then
+        var statisticsAfter = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("searches");
+        assertThat(firstSearch.getRecipes()).hasSize(1);
+        assertThat(cachedSearch.getRecipes()).isEqualTo(firstSearch.getRecipes());
+        assertThat(searchAfterChange.getRecipes()).hasSize(2);
+        assertThat(statisticsAfter.path("hits").asLong() - statisticsBefore.path("hits").asLong()).isEqualTo(1);
+        assertThat(statisticsAfter.path("misses").asLong() - statisticsBefore.path("misses").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_not_serve_cached_search_of_other_filters_with_separators_in_text() {
+        // given
+        var searchUri = URI.create("http://localhost:" + localServerPort + "/recipe/search");
+        restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID()),
+                createHttpEntity("{\"name\": \"Pizza|instructions=Bake\", \"instructions\": \"Bake it.\", " +
+                        "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 100}]}"));
+        var firstSearch = restTemplate.postForObject(searchUri,
+                createHttpEntity("{\"recipeName\": {\"containsText\": \"Pizza|instructions=Bake\"}, " +
+                        "\"instructions\": {\"containsText\": \"it\"}}"), RecipeSearchResponse.class);
+
+        // when
+        var otherSearch = restTemplate.postForObject(searchUri,
+                createHttpEntity("{\"recipeName\": {\"containsText\": \"Pizza\"}, " +
+                        "\"instructions\": {\"containsText\": \"Bake|instructions=it\"}}"), RecipeSearchResponse.class);
+
+        // then
+        assertThat(firstSearch.getRecipes()).hasSize(1);
+        assertThat(otherSearch.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_update_only_changed_ingredients() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 100}, {\"name\": \"Onion\", \"amount\": 50}, " +
+                "{\"name\": \"Basil\", \"amount\": 5}]}"));
+        var original = restTemplate.getForObject(recipeUri, Recipe.class);
+
+        // when
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"onion\", \"amount\": 60}, {\"name\": \"Tomato\", \"amount\": 100}, " +
+                "{\"name\": \"Garlic\", \"amount\": 3}]}"));
+        var updated = restTemplate.getForObject(recipeUri, Recipe.class);
+
+        // then
+        var originalIds = original.getIngredients().stream().map(Ingredient::getId).collect(Collectors.toList());
+        assertThat(updated.getIngredients()).extracting(Ingredient::getName, Ingredient::getAmount)
+                .containsExactly(tuple("onion", 60), tuple("Tomato", 100), tuple("Garlic", 3));
+        assertThat(updated.getIngredients().get(0).getId()).isEqualTo(originalIds.get(1));
+        assertThat(updated.getIngredients().get(1).getId()).isEqualTo(originalIds.get(0));
+        assertThat(originalIds).doesNotContain(updated.getIngredients().get(2).getId());
+        assertThat(jdbcTemplate.queryForObject("select count(*) from recipe_ingredients", Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    public void should_not_write_recipe_saved_with_same_content() {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId);
+        var request = "{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}";
+        restTemplate.put(recipeUri, createHttpEntity(request));
+        // Changed behind the back of the service, a write would restore the name
+        jdbcTemplate.update("update recipes set name = 'Not written'");
+
+        // when
+        restTemplate.put(recipeUri, createHttpEntity(request));
+
+        // then
+        assertThat(jdbcTemplate.queryForObject("select name from recipes", String.class)).isEqualTo("Not written");
+    }
+
+    @Test
+    public void should_answer_not_modified_while_recipe_version_is_the_same() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}"));
+        var eTag = restTemplate.getForEntity(recipeUri, Recipe.class).getHeaders().getETag();
+        var headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        // when
+        var notModified = restTemplate.exchange(recipeUri, HttpMethod.GET, new HttpEntity<>(headers), Recipe.class);
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 600}]}"));
+        var modified = restTemplate.exchange(recipeUri, HttpMethod.GET, new HttpEntity<>(headers), Recipe.class);
+
+        // then
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(notModified.getBody()).isNull();
+        assertThat(modified.getStatusCodeValue()).isEqualTo(200);
+        assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+        assertThat(modified.getBody().getIngredients()).extracting(Ingredient::getAmount).containsExactly(600);
+    }
+
+    @Test
+    public void should_send_large_recipe_gzipped() throws Exception {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+        var instructions = "Knead the dough and let it rise. ".repeat(100);
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"" + instructions + "\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}"));
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+        // when
+        var gzipped = restTemplate.exchange(recipeUri, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        var plain = restTemplate.getForEntity(recipeUri, byte[].class);
+        headers.setIfNoneMatch(gzipped.getHeaders().getETag());
+        var notModified = restTemplate.exchange(recipeUri, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        // then
+        assertThat(gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzipped.getHeaders().getETag()).isEqualTo(plain.getHeaders().getETag().replaceFirst("\"$", "-gzip\""));
+        assertThat(gzipped.getBody().length).isLessThan(plain.getBody().length / 4);
+        try (var body = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            assertThat(body.readAllBytes()).isEqualTo(plain.getBody());
+        }
+        assertThat(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(new ObjectMapper().readValue(plain.getBody(), Recipe.class).getInstructions()).isEqualTo(instructions);
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(notModified.getHeaders().getETag()).isEqualTo(gzipped.getHeaders().getETag());
+        assertThat(notModified.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @Test
+    public void should_serialize_recipe_again_after_change() {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId);
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}"));
+        restTemplate.getForObject(recipeUri, Recipe.class);
+        var hits = recipeJsonCache.statistics().getHits();
+        search("{}");
+        var searchHits = recipeJsonCache.statistics().getHits() - hits;
+
+        // when
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it well.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}"));
+        var recipe = restTemplate.getForObject(recipeUri, Recipe.class);
+        var found = search("{}");
+        var batch = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort +
+                "/recipe/batch?ids=" + recipeId), RecipeBatchResponse.class);
+
+        // then
+        assertThat(searchHits).isEqualTo(1);
+        assertThat(recipe.getInstructions()).isEqualTo("Bake it well.");
+        assertThat(found.getRecipes()).extracting(Recipe::getInstructions).containsExactly("Bake it well.");
+        assertThat(batch.getRecipes()).extracting(item -> item.getRecipe().getInstructions())
+                .containsExactly("Bake it well.");
+    }
+
+    @Test
+    public void should_compress_large_search_responses() {
+        // given
+        recipeRepository.saveAll(IntStream.range(0, 20)
+                .mapToObj(index -> Recipe.builder()
+                        .name("Pizza " + index)
+                        .ingredients(List.of(Ingredient.builder().name("Dough").amount(500).build()))
+                        .instructions("Knead the dough, let it rise and bake it.")
+                        .build())
+                .collect(Collectors.toList()));
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        // when
+        var response = restTemplate.exchange(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                HttpMethod.POST, new HttpEntity<>("{}", headers), byte[].class);
+
+        // then
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    }
+
+    @Test
+    public void should_reject_changes_based_on_stale_version() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+        var request = "{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}";
+        restTemplate.put(recipeUri, createHttpEntity(request));
+        var eTag = restTemplate.getForEntity(recipeUri, Recipe.class).getHeaders().getETag();
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setIfMatch(eTag);
+        var update = request.replace("Bake it.", "Bake it for 10 minutes.");
+        restTemplate.exchange(recipeUri, HttpMethod.PUT, new HttpEntity<>(update, headers), Void.class);
+
+        // when
+        try {
+            restTemplate.exchange(recipeUri, HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+        } catch (HttpClientErrorException e) {
+            // then
+            assertThat(e.getRawStatusCode()).isEqualTo(412);
+            assertThat(restTemplate.getForObject(recipeUri, Recipe.class).getInstructions())
+                    .isEqualTo("Bake it for 10 minutes.");
+            return;
+        }
+
+        throw new AssertionError("Expected 412 Precondition Failed");
+    }
+
+    @Test
+    public void should_not_match_tags_of_deleted_recipe_after_it_is_created_again() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + UUID.randomUUID());
+        var request = "{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}";
+        restTemplate.put(recipeUri, createHttpEntity(request));
+        var eTag = restTemplate.getForEntity(recipeUri, Recipe.class).getHeaders().getETag();
+        restTemplate.delete(recipeUri);
+        restTemplate.put(recipeUri, createHttpEntity(request.replace("Pizza", "Pizza margarita")));
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setIfNoneMatch(eTag);
+        headers.setIfMatch(eTag);
+
+        // when
+        var reread = restTemplate.exchange(recipeUri, HttpMethod.GET, new HttpEntity<>(headers), Recipe.class);
+        try {
+            restTemplate.exchange(recipeUri, HttpMethod.PUT, new HttpEntity<>(request, headers), Void.class);
+        } catch (HttpClientErrorException e) {
+            // then
+            assertThat(e.getRawStatusCode()).isEqualTo(412);
+            assertThat(reread.getStatusCodeValue()).isEqualTo(200);
+            assertThat(reread.getHeaders().getETag()).isNotEqualTo(eTag);
+            assertThat(restTemplate.getForObject(recipeUri, Recipe.class).getName()).isEqualTo("Pizza margarita");
+            return;
+        }
+
+        throw new AssertionError("Expected 412 Precondition Failed");
+    }
+
+    @Test
+    public void should_get_recipes_by_ids_in_request_order() {
+        // given
+        var pizzaId = UUID.randomUUID().toString();
+        var saladId = UUID.randomUUID().toString();
+        var missingId = UUID.randomUUID().toString();
+        restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + pizzaId),
+                createHttpEntity("{\"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                        "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}"));
+        restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + saladId),
+                createHttpEntity("{\"name\": \"Salad\", \"instructions\": \"Cut it.\", " +
+                        "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 200}]}"));
+        var batchUri = URI.create("http://localhost:" + localServerPort + "/recipe/batch?ids=" +
+                String.join(",", saladId, missingId, pizzaId.toUpperCase(), "pizza"));
+        var hitsBefore = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("recipes").path("hits").asLong();
+
+        // when
+        var response = restTemplate.getForObject(batchUri, RecipeBatchResponse.class);
+        restTemplate.getForObject(batchUri, RecipeBatchResponse.class);
+
+        // then
+        var hitsAfter = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/cache"),
+                JsonNode.class).path("recipes").path("hits").asLong();
+        assertThat(response.getRecipes())
+                .extracting(RecipeBatchResponse.Item::getId, item -> item.getRecipe() == null ? null : item.getRecipe().getName())
+                .containsExactly(tuple(saladId, "Salad"), tuple(missingId, null),
+                        tuple(pizzaId.toUpperCase(), "Pizza"), tuple("pizza", null));
+        assertThat(response.getRecipes().get(1).getError()).isEqualTo("Recipe with id " + missingId + " not found");
+        assertThat(hitsAfter - hitsBefore).isEqualTo(2);
+    }
+
+    @Test
+    public void should_search_by_included_and_excluded_ingredients() {
+        // given
+        recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Tomato").amount(500).build(),
+                                Ingredient.builder().name("Mozzarella").amount(500).build(),
+                                Ingredient.builder().name("Basil").amount(10).build()
+                        ))
+                        .instructions("Put tomato, mozzarella and basil on the dough and bake it.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .name("Tuna pizza")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Tomato").amount(500).build(),
+                                Ingredient.builder().name("Tuna").amount(500).build(),
+                                Ingredient.builder().name("Mozzarella").amount(500).build()
+                        ))
+                        .instructions("Put tomato, tuna and mozzarella on the dough and bake it.")
+                        .vegetarian(false)
+                        .build(),
+                Recipe.builder()
+                        .name("Pesto pasta")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Basil").amount(50).build(),
+                                Ingredient.builder().name("Pine nuts").amount(30).build(),
+                                Ingredient.builder().name("Pasta").amount(300).build()
+                        ))
+                        .instructions("Blend basil and pine nuts, mix it with the boiled pasta.")
+                        .vegetarian(true)
+                        .build()
+        ));
+
+        // when
+        var withTomatoAndBasil = search("{\"includeIngredients\": [\"tomato\", \"BASIL\"]}");
+        var withoutTuna = search("{\"includeIngredients\": [\" Mozzarella \", \"tomato\", \"Tomato\"], " +
+                "\"excludeIngredients\": [\"tuna\", \"Saffron\"]}");
+        var withoutNutsAndTuna = search("{\"excludeIngredients\": [\"Pine nuts\", \"Tuna\"]}");
+        var withUnknown = search("{\"includeIngredients\": [\"Basil\", \"Saffron\"]}");
+        var counted = search("{\"includeIngredients\": [\"Basil\"], \"excludeIngredients\": [\"Tomato\"], " +
+                "\"includeCounts\": true}");
+
+        // then
+        assertThat(withTomatoAndBasil.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+        assertThat(withoutTuna.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+        assertThat(withoutNutsAndTuna.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+        assertThat(withUnknown.getRecipes()).isEmpty();
+        assertThat(counted.getRecipes()).extracting(Recipe::getName).containsExactly("Pesto pasta");
+        assertThat(counted.getTotalNumberOfRecipes()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_not_search_with_blank_included_ingredient() {
+        // when
+        try {
+            search("{\"includeIngredients\": [\"Tomato\", \" \"]}");
+        } catch (HttpClientErrorException.BadRequest e) {
+            // then
+            return;
+        }
+        throw new AssertionError("Expected BadRequest exception");
+    }
+
+    private RecipeSearchResponse search(String filters) {
+        return restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity(filters), RecipeSearchResponse.class);
+    }
+
     private static HttpEntity<String> createHttpEntity(String body) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -0,0 +1,277 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeBatchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeChange;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeChangeRepository;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // The test context decides between servlet and reactive before the profile files are read
+        properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+@EnableAutoConfiguration
+public class RecipeReactiveIntegrationTest {
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private RecipeChangeRepository recipeChangeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository.deleteAll();
+        recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000001")
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Mozzarella").amount(500).build(),
+                                Ingredient.builder().name("Tomato").amount(300).build()
+                        ))
+                        .instructions("Put mozzarella on the dough and bake it in the oven.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000002")
+                        .name("Tuna pizza")
+                        .ingredients(List.of(Ingredient.builder().name("Tuna").amount(500).build()))
+                        .instructions("Put tuna on the dough and bake it on the grill.")
+                        .vegetarian(false)
+                        .build(),
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000003")
+                        .name("Salad with tomato")
+                        .ingredients(List.of(Ingredient.builder().name("Tomato").amount(500).build()))
+                        .instructions("Cut the tomato into small pieces.")
+                        .vegetarian(true)
+                        .build()
+        ));
+    }
+
+    @Test
+    public void should_save_get_and_delete_recipe() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/00000000-0000-0000-0000-00000000000A");
+
+        // when
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Tomato soup\", \"instructions\": \"Boil it.\", " +
+                "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 800}, {\"name\": \" Basil \", \"amount\": 10}]}"));
+        var saved = restTemplate.getForObject(recipeUri, Recipe.class);
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Tomato soup\", \"instructions\": \"Boil it.\", " +
+                "\"ingredients\": [{\"name\": \"basil\", \"amount\": 20}], \"vegetarian\": true}"));
+        var updated = restTemplate.getForObject(recipeUri, Recipe.class);
+        restTemplate.delete(recipeUri);
+
+        // then
+        assertThat(saved.getId()).isEqualTo("00000000-0000-0000-0000-00000000000a");
+        assertThat(saved.getIngredients()).extracting(Ingredient::getName, Ingredient::getAmount)
+                .containsExactly(tuple("Tomato", 800),
+                        tuple("Basil", 10));
+        assertThat(updated.isVegetarian()).isTrue();
+        assertThat(updated.getIngredients()).extracting(Ingredient::getName).containsExactly("basil");
+        assertThat(recipeRepository.findById("00000000-0000-0000-0000-00000000000a")).isEmpty();
+        try {
+            restTemplate.getForObject(recipeUri, Recipe.class);
+        } catch (HttpClientErrorException.NotFound e) {
+            return;
+        }
+        throw new AssertionError("Expected NotFound exception");
+    }
+
+    @Test
+    public void should_record_changes_in_change_feed() {
+        // given
+        var start = recipeChangeRepository.lastSequence();
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/00000000-0000-0000-0000-00000000000b");
+
+        // when
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Tomato soup\", \"instructions\": \"Boil it.\", " +
+                "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 800}]}"));
+        restTemplate.delete(recipeUri);
+        var changes = recipeChangeRepository.findAfter(start, 10);
+
+        // then
+        assertThat(changes).extracting(RecipeChange::getRecipeId, RecipeChange::getOperation)
+                .containsExactly(
+                        tuple("00000000-0000-0000-0000-00000000000b", RecipeChange.Operation.UPSERT),
+                        tuple("00000000-0000-0000-0000-00000000000b", RecipeChange.Operation.DELETE));
+        assertThat(changes.get(0).getVersion()).isPositive();
+        assertThat(changes.get(1).getVersion()).isNull();
+        assertThat(changes).extracting(RecipeChange::getSequence).containsExactly(start + 1, start + 2);
+    }
+
+    @Test
+    public void should_not_add_recipe_with_non_uuid_id() {
+        // when
+        try {
+            restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/salad"),
+                    createHttpEntity("{\"name\": \"Salad\", \"instructions\": \"Mix it.\", " +
+                            "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 100}]}"));
+        } catch (HttpClientErrorException.BadRequest e) {
+            // then
+            return;
+        }
+        throw new AssertionError("Expected BadRequest exception");
+    }
+
+    @Test
+    public void should_search_with_same_filters_as_servlet_api() {
+        // when
+        var byIngredient = search("{\"ingredientName\": {\"exactText\": \"TOMATO\"}}");
+        var withoutIngredient = search("{\"ingredientName\": {\"exactText\": \"tomato\", \"reverse\": true}}");
+        var unknownIngredient = search("{\"ingredientName\": {\"exactText\": \"Salmon\"}}");
+        var combined = search("{\"recipeName\": {\"containsText\": \"pizza\"}, " +
+                "\"instructions\": {\"containsText\": \"grill\", \"reverse\": true}, \"vegetarian\": true}");
+
+        // then
+        assertThat(byIngredient.getRecipes()).extracting(Recipe::getName)
+                .containsExactly("Pizza mozzarella", "Salad with tomato");
+        assertThat(byIngredient.getRecipes().iterator().next().getIngredients()).extracting(Ingredient::getName)
+                .containsExactly("Mozzarella", "Tomato");
+        assertThat(withoutIngredient.getRecipes()).extracting(Recipe::getName).containsExactly("Tuna pizza");
+        assertThat(unknownIngredient.getRecipes()).isEmpty();
+        assertThat(combined.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+    }
+
+    @Test
+    public void should_search_by_included_and_excluded_ingredients() {
+        // when
+        var withTomatoAndMozzarella = search("{\"includeIngredients\": [\"tomato\", \" MOZZARELLA\", \"Tomato\"]}");
+        var withoutMozzarella = search("{\"includeIngredients\": [\"Tomato\"], " +
+                "\"excludeIngredients\": [\"mozzarella\", \"Saffron\"]}");
+        var withUnknown = search("{\"includeIngredients\": [\"Tomato\", \"Saffron\"]}");
+
+        // then
+        assertThat(withTomatoAndMozzarella.getRecipes()).extracting(Recipe::getName)
+                .containsExactly("Pizza mozzarella");
+        assertThat(withoutMozzarella.getRecipes()).extracting(Recipe::getName).containsExactly("Salad with tomato");
+        assertThat(withUnknown.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_count_all_matching_recipes_when_requested() {
+        // when
+        var recipes = search("{\"vegetarian\": true, \"pageSize\": 1, \"includeCounts\": true, \"topIngredients\": 1}");
+
+        // then
+        assertThat(recipes.getRecipes()).hasSize(1);
+        assertThat(recipes.getTotalNumberOfRecipes()).isEqualTo(2);
+        assertThat(recipes.getFacets().getVegetarian()).isEqualTo(2);
+        assertThat(recipes.getFacets().getNonVegetarian()).isZero();
+        assertThat(recipes.getFacets().getIngredients())
+                .extracting(RecipeFacets.IngredientCount::getName, RecipeFacets.IngredientCount::getRecipes)
+                .containsExactly(tuple("Tomato", 2L));
+    }
+
+    @Test
+    public void should_page_by_continuation_token() {
+        // when
+        var firstPage = search("{\"pageSize\": 2}");
+        var secondPage = search("{\"pageSize\": 2, \"continuationToken\": \"" + firstPage.getContinuationToken() + "\"}");
+        var byNumber = search("{\"pageSize\": 2, \"pageNumber\": 1}");
+
+        // then
+        assertThat(firstPage.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella", "Tuna pizza");
+        assertThat(secondPage.getRecipes()).extracting(Recipe::getName).containsExactly("Salad with tomato");
+        assertThat(secondPage.getContinuationToken()).isNull();
+        assertThat(byNumber.getRecipes()).extracting(Recipe::getName).containsExactly("Salad with tomato");
+    }
+
+    @Test
+    public void should_stream_all_matching_recipes_as_ndjson() {
+        // given
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+
+        // when
+        var response = restTemplate.exchange(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                HttpMethod.POST, new HttpEntity<>("{\"vegetarian\": true, \"pageSize\": 1}", headers), String.class);
+
+        // then
+        var lines = response.getBody().strip().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"name\":\"Pizza mozzarella\"", "\"name\":\"Tomato\"");
+        assertThat(lines[1]).contains("\"name\":\"Salad with tomato\"");
+    }
+
+    @Test
+    public void should_answer_not_modified_for_current_etag() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/00000000-0000-0000-0000-000000000002");
+        var eTag = restTemplate.getForEntity(recipeUri, Recipe.class).getHeaders().getETag();
+        var headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        // when
+        var notModified = restTemplate.exchange(recipeUri, HttpMethod.GET, new HttpEntity<>(headers), Recipe.class);
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Tuna pizza\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tuna\", \"amount\": 500}]}"));
+        var modified = restTemplate.exchange(recipeUri, HttpMethod.GET, new HttpEntity<>(headers), Recipe.class);
+
+        // then
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(modified.getStatusCodeValue()).isEqualTo(200);
+        assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+    }
+
+    @Test
+    public void should_get_recipes_by_ids_in_request_order() {
+        // when
+        var response = restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/recipe/batch?ids=" +
+                        "00000000-0000-0000-0000-000000000003,00000000-0000-0000-0000-000000000009," +
+                        "00000000-0000-0000-0000-000000000001"), RecipeBatchResponse.class);
+
+        // then
+        assertThat(response.getRecipes())
+                .extracting(RecipeBatchResponse.Item::getId, item -> item.getRecipe() == null ? null : item.getRecipe().getName())
+                .containsExactly(tuple("00000000-0000-0000-0000-000000000003", "Salad with tomato"),
+                        tuple("00000000-0000-0000-0000-000000000009", null),
+                        tuple("00000000-0000-0000-0000-000000000001", "Pizza mozzarella"));
+        assertThat(response.getRecipes().get(2).getRecipe().getIngredients()).extracting(Ingredient::getName)
+                .containsExactly("Mozzarella", "Tomato");
+    }
+
+    private RecipeSearchResponse search(String filters) {
+        return restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity(filters), RecipeSearchResponse.class);
+    }
+
+    private static HttpEntity<String> createHttpEntity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeJsonCache;
+import com.github.nikita.zhdanov.favorite.recipes.cache.RecipeSearchCache;
+import com.github.nikita.zhdanov.favorite.recipes.index.RecipeSearchIndex;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.Recipe;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeFacets;
+import com.github.nikita.zhdanov.favorite.recipes.model.RecipeSearchResponse;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "recipes.search.backend=index")
+@EnableAutoConfiguration
+public class RecipeSearchIndexIntegrationTest {
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeJsonCache recipeJsonCache;
+    @Autowired
+    private RecipeSearchCache recipeSearchCache;
+    @Autowired
+    private RecipeSearchIndex recipeSearchIndex;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository.deleteAll();
+        recipeRepository.saveAll(List.of(
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000001")
+                        .name("Pizza mozzarella")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Mozzarella").amount(500).build(),
+                                Ingredient.builder().name("Tomato").amount(500).build()
+                        ))
+                        .instructions("Put mozzarella on the dough and bake it in the oven.")
+                        .vegetarian(true)
+                        .build(),
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000002")
+                        .name("Tuna pizza")
+                        .ingredients(List.of(
+                                Ingredient.builder().name("Tuna").amount(500).build(),
+                                Ingredient.builder().name("Tomato").amount(500).build()
+                        ))
+                        .instructions("Put tuna on the dough and bake it on the grill.")
+                        .vegetarian(false)
+                        .build(),
+                Recipe.builder()
+                        .id("00000000-0000-0000-0000-000000000003")
+                        .name("Salad with tomato")
+                        .ingredients(List.of(Ingredient.builder().name("Tomato").amount(500).build()))
+                        .instructions("Cut the tomato into small pieces.")
+                        .vegetarian(true)
+                        .build()
+        ));
+        recipeCache.invalidateAll();
+        recipeJsonCache.invalidateAll();
+        recipeSearchCache.invalidateAll();
+        recipeSearchIndex.rebuild();
+    }
+
+    @Test
+    public void should_search_by_parts_of_words_and_phrases() {
+        // when
+        var byWordPart = search("{\"recipeName\": {\"containsText\": \"IZZ\"}}");
+        var byPhrase = search("{\"instructions\": {\"containsText\": \"dough and bake it o\"}}");
+        var byShuffledWords = search("{\"instructions\": {\"containsText\": \"bake and dough\"}}");
+
+        // then
+        assertThat(byWordPart.getRecipes()).extracting(Recipe::getName)
+                .containsExactly("Pizza mozzarella", "Tuna pizza");
+        assertThat(byPhrase.getRecipes()).extracting(Recipe::getName).containsExactly("Tuna pizza");
+        assertThat(byShuffledWords.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_combine_reversed_ingredient_and_vegetarian_filters() {
+        // when
+        var recipes = search("{\"ingredientName\": {\"exactText\": \"mozzarella\", \"reverse\": true}, " +
+                "\"instructions\": {\"containsText\": \"tomato\", \"reverse\": true}, \"vegetarian\": false}");
+
+        // then
+        assertThat(recipes.getRecipes()).extracting(Recipe::getName).containsExactly("Tuna pizza");
+    }
+
+    @Test
+    public void should_intersect_included_and_subtract_excluded_ingredients() {
+        // when
+        var recipes = search("{\"includeIngredients\": [\"tomato\", \"Mozzarella\"]}");
+        var withoutMeatOrCheese = search("{\"includeIngredients\": [\"Tomato\"], " +
+                "\"excludeIngredients\": [\"Tuna\", \"mozzarella\", \"Saffron\"]}");
+        var withUnknown = search("{\"includeIngredients\": [\"Tomato\", \"Saffron\"]}");
+
+        // then
+        assertThat(recipes.getRecipes()).extracting(Recipe::getName).containsExactly("Pizza mozzarella");
+        assertThat(withoutMeatOrCheese.getRecipes()).extracting(Recipe::getName).containsExactly("Salad with tomato");
+        assertThat(withUnknown.getRecipes()).isEmpty();
+    }
+
+    @Test
+    public void should_page_by_continuation_token() {
+        // when
+        var firstPage = search("{\"ingredientName\": {\"exactText\": \"Tomato\"}, \"pageSize\": 2}");
+        var secondPage = search("{\"ingredientName\": {\"exactText\": \"Tomato\"}, \"pageSize\": 2, " +
+                "\"continuationToken\": \"" + firstPage.getContinuationToken() + "\"}");
+
+        // then
+        assertThat(firstPage.getRecipes()).extracting(Recipe::getName)
+                .containsExactly("Pizza mozzarella", "Tuna pizza");
+        assertThat(secondPage.getRecipes()).extracting(Recipe::getName).containsExactly("Salad with tomato");
+        assertThat(secondPage.getContinuationToken()).isNull();
+    }
+
+    @Test
+    public void should_count_facets_from_bitmaps() {
+        // when
+        var recipes = search("{\"ingredientName\": {\"exactText\": \"mozzarella\", \"reverse\": true}, " +
+                "\"includeCounts\": true}");
+
+        // then
+        assertThat(recipes.getTotalNumberOfRecipes()).isEqualTo(2);
+        assertThat(recipes.getFacets().getVegetarian()).isEqualTo(1);
+        assertThat(recipes.getFacets().getNonVegetarian()).isEqualTo(1);
+        assertThat(recipes.getFacets().getIngredients())
+                .extracting(RecipeFacets.IngredientCount::getName, RecipeFacets.IngredientCount::getRecipes)
+                .containsExactly(tuple("Tomato", 2L), tuple("Tuna", 1L));
+    }
+
+    @Test
+    public void should_keep_index_current_on_changes() {
+        // given
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/00000000-0000-0000-0000-000000000003");
+
+        // when
+        restTemplate.put(recipeUri, createHttpEntity("{\"name\": \"Pizza with tomato\", \"instructions\": \"Bake it.\", " +
+                "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 100}]}"));
+        var afterUpdate = search("{\"recipeName\": {\"containsText\": \"pizza\"}}");
+        restTemplate.delete(recipeUri);
+        var afterDelete = search("{\"recipeName\": {\"containsText\": \"pizza\"}}");
+
+        // then
+        assertThat(afterUpdate.getRecipes()).extracting(Recipe::getName)
+                .containsExactly("Pizza mozzarella", "Tuna pizza", "Pizza with tomato");
+        assertThat(afterDelete.getRecipes()).extracting(Recipe::getName)
+                .containsExactly("Pizza mozzarella", "Tuna pizza");
+    }
+
+    private RecipeSearchResponse search(String filters) {
+        return restTemplate.postForObject(URI.create("http://localhost:" + localServerPort + "/recipe/search"),
+                createHttpEntity(filters), RecipeSearchResponse.class);
+    }
+
+    private static HttpEntity<String> createHttpEntity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}
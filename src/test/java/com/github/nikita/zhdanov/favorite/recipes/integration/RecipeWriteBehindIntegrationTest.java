@@ -0,0 +1,256 @@
+package com.github.nikita.zhdanov.favorite.recipes.integration;
+
+import com.github.nikita.zhdanov.favorite.recipes.Application;
+import com.github.nikita.zhdanov.favorite.recipes.model.Ingredient;
+import com.github.nikita.zhdanov.favorite.recipes.model.WriteBehindStatus;
+import com.github.nikita.zhdanov.favorite.recipes.repository.RecipeRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {EmbeddedMariaDbConfig.class, Application.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"recipes.write-behind.enabled=true", "recipes.write-behind.journal=target/write-behind-test.journal",
+                "recipes.write-behind.journal-segment-size=1KB", "recipes.write-behind.group-size=1"})
+@EnableAutoConfiguration
+public class RecipeWriteBehindIntegrationTest {
+    private static final String REPLAYED_RECIPE_ID = "00000000-0000-0000-0000-000000000019";
+
+    // Left behind by a previous run of the service, before the application starts
+    static {
+        try (var files = Files.list(Path.of("target"))) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith("write-behind-test.journal.")) {
+                    Files.delete(file);
+                }
+            }
+            Files.writeString(Path.of("target/write-behind-test.journal"),
+                    "{\"id\": \"" + REPLAYED_RECIPE_ID + "\", \"name\": \"Pizza\", \"instructions\": \"Bake it.\", " +
+                            "\"ingredients\": [{\"name\": \"Dough\", \"amount\": 500}]}\n" +
+                            "{\"id\": \"" + REPLAYED_RECIPE_ID + "\", \"name\": \"Piz",
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @LocalServerPort
+    private int localServerPort;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void should_replay_journal_on_start() throws Exception {
+        // when
+        awaitWritten();
+
+        // then
+        var recipe = recipeRepository.findById(REPLAYED_RECIPE_ID).orElseThrow();
+        assertThat(recipe.getName()).isEqualTo("Pizza");
+        assertThat(status().getJournalBytes()).isZero();
+    }
+
+    @Test
+    public void should_accept_saves_and_write_the_last_one() throws Exception {
+        // given
+        var recipeId = UUID.randomUUID().toString();
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId);
+
+        // when
+        var responses = new int[3];
+        for (var amount = 1; amount <= 3; amount++) {
+            responses[amount - 1] = restTemplate.exchange(recipeUri, HttpMethod.PUT,
+                    createHttpEntity("{\"name\": \"Salad\", \"instructions\": \"Cut it.\", " +
+                            "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": " + amount + "}]}"), Void.class)
+                    .getStatusCodeValue();
+        }
+        var status = awaitWritten();
+
+        // then
+        assertThat(responses).containsOnly(202);
+        assertThat(recipeRepository.findById(recipeId).orElseThrow().getIngredients())
+                .extracting(Ingredient::getAmount).containsExactly(3);
+        assertThat(status.getLagMillis()).isZero();
+        assertThat(status.getJournalBytes()).isZero();
+    }
+
+    @Test
+    public void should_retry_saves_while_database_fails() throws Exception {
+        // given
+        jdbcTemplate.execute("create trigger fail_retried_salad before insert on recipes for each row " +
+                "if new.name = 'Retried salad' then signal sqlstate '40001' set message_text = 'Deadlock'; end if");
+        var recipeId = UUID.randomUUID().toString();
+        WriteBehindStatus failingStatus;
+        try {
+            // when
+            restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId),
+                    createHttpEntity("{\"name\": \"Retried salad\", \"instructions\": \"Cut it.\", " +
+                            "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 1}]}"));
+            Thread.sleep(1500);
+            failingStatus = status();
+        } finally {
+            jdbcTemplate.execute("drop trigger fail_retried_salad");
+        }
+        var status = awaitWritten();
+
+        // then
+        assertThat(failingStatus.getQueueDepth()).isEqualTo(1);
+        assertThat(failingStatus.getJournalBytes()).isPositive();
+        assertThat(recipeRepository.findById(recipeId)).isPresent();
+        assertThat(status.getFailed()).isEqualTo(failingStatus.getFailed());
+        assertThat(status.getJournalBytes()).isZero();
+    }
+
+    @Test
+    public void should_drop_saves_the_database_rejects() throws Exception {
+        // given
+        jdbcTemplate.execute("create trigger reject_rejected_salad before insert on recipes for each row " +
+                "if new.name = 'Rejected salad' then signal sqlstate '22001' set message_text = 'Too long'; end if");
+        var recipeId = UUID.randomUUID().toString();
+        var failed = status().getFailed();
+        WriteBehindStatus status;
+        try {
+            // when
+            restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId),
+                    createHttpEntity("{\"name\": \"Rejected salad\", \"instructions\": \"Cut it.\", " +
+                            "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 1}]}"));
+            status = awaitWritten();
+        } finally {
+            jdbcTemplate.execute("drop trigger reject_rejected_salad");
+        }
+
+        // then
+        assertThat(recipeRepository.findById(recipeId)).isEmpty();
+        assertThat(status.getFailed()).isEqualTo(failed + 1);
+        assertThat(status.getJournalBytes()).isZero();
+    }
+
+    @Test
+    public void should_delete_written_journal_segments_while_writer_is_behind() throws Exception {
+        // given
+        jdbcTemplate.execute("create trigger hold_first_soup before insert on recipes for each row " +
+                "if new.name = 'First soup' then signal sqlstate '40001' set message_text = 'Deadlock'; end if");
+        jdbcTemplate.execute("create trigger hold_last_soup before insert on recipes for each row " +
+                "if new.name = 'Last soup' then signal sqlstate '40001' set message_text = 'Deadlock'; end if");
+        long journalBytes;
+        WriteBehindStatus trimmedStatus;
+        try {
+            put(UUID.randomUUID().toString(), "First soup");
+            Thread.sleep(300);
+            for (var i = 0; i < 20; i++) {
+                put(UUID.randomUUID().toString(), "Salad");
+            }
+            put(UUID.randomUUID().toString(), "Last soup");
+            journalBytes = status().getJournalBytes();
+
+            // when
+            jdbcTemplate.execute("drop trigger hold_first_soup");
+            trimmedStatus = awaitQueueDepth(1);
+        } finally {
+            jdbcTemplate.execute("drop trigger if exists hold_first_soup");
+            jdbcTemplate.execute("drop trigger hold_last_soup");
+        }
+        var status = awaitWritten();
+
+        // then
+        assertThat(journalBytes).isGreaterThan(3 * 1024);
+        assertThat(trimmedStatus.getJournalBytes()).isPositive().isLessThan(2 * 1024);
+        assertThat(status.getJournalBytes()).isZero();
+    }
+
+    @Test
+    public void should_delete_recipe_after_its_accepted_save() throws Exception {
+        // given
+        jdbcTemplate.execute("create trigger hold_deleted_salad before insert on recipes for each row " +
+                "if new.name = 'Deleted salad' then signal sqlstate '40001' set message_text = 'Deadlock'; end if");
+        var recipeId = UUID.randomUUID().toString();
+        var recipeUri = URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId);
+        var release = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            jdbcTemplate.execute("drop trigger hold_deleted_salad");
+        });
+        int putStatus;
+        int deleteStatus;
+        try {
+            putStatus = restTemplate.exchange(recipeUri, HttpMethod.PUT,
+                    createHttpEntity("{\"name\": \"Deleted salad\", \"instructions\": \"Cut it.\", " +
+                            "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 1}]}"), Void.class)
+                    .getStatusCodeValue();
+            release.start();
+
+            // when
+            deleteStatus = restTemplate.exchange(recipeUri, HttpMethod.DELETE, null, Void.class).getStatusCodeValue();
+        } finally {
+            release.join();
+            jdbcTemplate.execute("drop trigger if exists hold_deleted_salad");
+        }
+        awaitWritten();
+
+        // then
+        assertThat(putStatus).isEqualTo(202);
+        assertThat(deleteStatus).isEqualTo(204);
+        assertThat(recipeRepository.findById(recipeId)).isEmpty();
+    }
+
+    private void put(String recipeId, String name) {
+        restTemplate.put(URI.create("http://localhost:" + localServerPort + "/recipe/" + recipeId),
+                createHttpEntity("{\"name\": \"" + name + "\", \"instructions\": \"Cook it.\", " +
+                        "\"ingredients\": [{\"name\": \"Tomato\", \"amount\": 1}]}"));
+    }
+
+    private WriteBehindStatus awaitWritten() throws InterruptedException {
+        return awaitQueueDepth(0);
+    }
+
+    private WriteBehindStatus awaitQueueDepth(int queueDepth) throws InterruptedException {
+        for (var attempt = 0; attempt < 100; attempt++) {
+            var status = status();
+            if (status.getQueueDepth() == queueDepth) {
+                return status;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Expected " + queueDepth + " saves in the write-behind queue");
+    }
+
+    private WriteBehindStatus status() {
+        return restTemplate.getForObject(URI.create("http://localhost:" + localServerPort + "/write-behind"),
+                WriteBehindStatus.class);
+    }
+
+    private static HttpEntity<String> createHttpEntity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}